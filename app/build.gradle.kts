@@ -19,11 +19,19 @@ android {
         multiDexEnabled = true
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // FrameTrace hot-path events; false compiles the tracing calls out
+        buildConfigField("boolean", "FRAME_TRACE", "true")
+    }
+
+    buildFeatures {
+        buildConfig = true
     }
 
 
     buildTypes {
         release {
+            buildConfigField("boolean", "FRAME_TRACE", "false")
             isMinifyEnabled = false
             isCrunchPngs = false
             proguardFiles(
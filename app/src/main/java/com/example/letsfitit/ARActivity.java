@@ -1,17 +1,21 @@
 package com.example.letsfitit;
 
 import android.Manifest;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.util.Size;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
 import android.view.Surface;
 import android.view.View;
+import android.view.Window;
 import android.widget.Button;
-import android.widget.ImageView;
-import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -30,9 +34,9 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -40,27 +44,77 @@ import java.util.concurrent.Executors;
 public class ARActivity extends AppCompatActivity implements MediaPipePoseDetector.PoseDetectionListener {
     private static final String TAG = "ARActivity";
     private static final int CAMERA_PERMISSION_REQUEST = 100;
+    // Boolean extra; records analysis frames and poses for off-device replay,
+    // e.g. adb shell am start -n com.example.letsfitit/.ARActivity --ez record_frames true
+    public static final String EXTRA_RECORD_FRAMES = "record_frames";
+    private static final int MAX_RECORDED_FRAMES = 600;
 
     private PreviewView previewView;
     private ProcessCameraProvider cameraProvider;
     private ExecutorService cameraExecutor;
-    private MediaPipePoseDetector poseDetector;
-
-    private ImageView clothingOverlay;
+    // Borrowed from ModelRegistry; null until it has loaded
+    private volatile MediaPipePoseDetector poseDetector;
+    private boolean poseDetectorAcquired;
+    private YuvToRgbConverter yuvConverter;
+    // Crop sizes are quantized, but tracked and full-frame crops still need a few more pool buckets
+    private final FrameBufferPool framePool = new FrameBufferPool(8, 3);
+    private final RoiTracker roiTracker = new RoiTracker();
+
+    // capture -> convert -> infer -> place; conversion of the next frame overlaps inference of the current one
+    private static final int FRAMES_IN_FLIGHT = 4;
+    private static final long PIPELINE_SHUTDOWN_TIMEOUT_MS = 500L;
+    private final ArrayBlockingQueue<AnalysisFrame> freeFrames = new ArrayBlockingQueue<>(FRAMES_IN_FLIGHT);
+    private FramePipeline framePipeline;
+    private FramePipeline.Stage<AnalysisFrame, AnalysisFrame> convertStage;
+    private FramePipeline.Stage<AnalysisFrame, Void> inferStage;
+    private FramePipeline.Stage<PoseFrame, Void> placeStage;
+
+    private static final long SHOULDERS = PoseFrame.maskOf(PoseFrame.LEFT_SHOULDER, PoseFrame.RIGHT_SHOULDER);
+    private static final long HIPS = PoseFrame.maskOf(PoseFrame.LEFT_HIP, PoseFrame.RIGHT_HIP);
+    // View-space landmarks; this is the pose overlay's own point buffer, so the overlay is fed without a copy
+    private float[] screenPoints;
+    private final CameraViewTransform viewTransform = new CameraViewTransform();
+    private final GarmentPlacement garmentPlacement = new GarmentPlacement();
+    private volatile int analysisWidth = 0;
+    private volatile int analysisHeight = 0;
+
+    // Inference results feed the smoother; the garment is re-placed from its prediction on every vsync
+    private static final long POSE_STALE_NANOS = 500_000_000L;
+    private final PoseSmoother poseSmoother = new PoseSmoother();
+    private final PoseFrame displayFrame = new PoseFrame();
+    private final Choreographer.FrameCallback vsyncCallback = this::onVsync;
+    private boolean vsyncScheduled = false;
+
+    private ClothingOverlayView clothingOverlay;
     private Button btnBack;
     private Button btnTogglePoseView;
     private TextView tvPoseStatus;
     private PoseOverlayView poseOverlay;
 
     private boolean isPoseDetected = false;
-    private float initialClothingWidth = 400f;
-    private float initialClothingHeight = 500f;
+    private float initialClothingWidth = GarmentPlacement.BASE_WIDTH;
+    private float initialClothingHeight = GarmentPlacement.BASE_HEIGHT;
 
-    private long lastProcessTime = 0;
-    private static final long MIN_FRAME_INTERVAL = 300L;
+    // Analysis rate is bounded by measured pipeline latency instead of a fixed interval
+    private static final float MAX_ANALYSIS_FPS = 30f;
+    private static final float TARGET_PIPELINE_UTILIZATION = 0.7f;
+    private final FrameRateGovernor frameGovernor =
+            new FrameRateGovernor(MAX_ANALYSIS_FPS, TARGET_PIPELINE_UTILIZATION);
 
     private boolean isFrontCamera = true;
 
+    // Stage latencies and frame counters, shown in the stats HUD and exported on long press
+    private static final long HUD_REFRESH_MS = 500L;
+    private final PerfMetrics perfMetrics = new PerfMetrics();
+    private final StringBuilder hudText = new StringBuilder(256);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable hudRefresh = this::refreshPerfHud;
+    private final Window.OnFrameMetricsAvailableListener frameMetricsListener = (window, metrics, dropCount) ->
+            perfMetrics.record(PerfMetrics.Stage.DRAW, metrics.getMetric(FrameMetrics.DRAW_DURATION));
+    private Button btnTogglePerfHud;
+    private TextView tvPerfHud;
+    private volatile FrameRecorder frameRecorder;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -68,7 +122,11 @@ public class ARActivity extends AppCompatActivity implements MediaPipePoseDetect
             setContentView(R.layout.activity_ar);
             initializeViews();
             setupPoseDetector();
+            if (getIntent().getBooleanExtra(EXTRA_RECORD_FRAMES, false)) {
+                startRecording();
+            }
             setupClickListeners();
+            getWindow().addOnFrameMetricsAvailableListener(frameMetricsListener, mainHandler);
 
             if (allPermissionsGranted()) {
                 startCamera();
@@ -88,24 +146,95 @@ public class ARActivity extends AppCompatActivity implements MediaPipePoseDetect
         btnBack = findViewById(R.id.btn_back);
         btnTogglePoseView = findViewById(R.id.btn_toggle_pose_view);
         tvPoseStatus = findViewById(R.id.tv_pose_status);
+        btnTogglePerfHud = findViewById(R.id.btn_toggle_perf_hud);
+        tvPerfHud = findViewById(R.id.tv_perf_hud);
         poseOverlay = findViewById(R.id.pose_overlay);
+        screenPoints = poseOverlay.getPointBuffer();
 
-        if (ARDataHolder.getSegmentedBitmap() != null) {
-            clothingOverlay.setImageBitmap(ARDataHolder.getSegmentedBitmap());
+        // After process death the in-memory garment is gone, but TryActivity saved it to disk
+        if (ARDataHolder.getSegmentedBitmap() != null || ARDataHolder.restoreGarment(this)) {
+            clothingOverlay.setGarment(ARDataHolder.getSegmentedBitmap());
+            clothingOverlay.setDefaultSize(initialClothingWidth, initialClothingHeight);
             clothingOverlay.setVisibility(View.VISIBLE);
-            RelativeLayout.LayoutParams params = (RelativeLayout.LayoutParams) clothingOverlay.getLayoutParams();
-            params.width = (int) initialClothingWidth;
-            params.height = (int) initialClothingHeight;
-            params.addRule(RelativeLayout.CENTER_IN_PARENT, RelativeLayout.TRUE);
-            clothingOverlay.setLayoutParams(params);
+            Log.d(TAG, "Clothing type: " + ARDataHolder.getClothingType());
         } else {
             Toast.makeText(this, "No clothing image available", Toast.LENGTH_SHORT).show();
             clothingOverlay.setVisibility(View.GONE);
         }
     }
 
+    // The detector is shared through ModelRegistry and usually already warm; frames arriving before
+    // it is bound are dropped in inferFrame
     private void setupPoseDetector() {
-        poseDetector = new MediaPipePoseDetector(this, this);
+        poseDetectorAcquired = true;
+        ModelRegistry.get(this).acquirePoseDetector(new ModelRegistry.Callback<MediaPipePoseDetector>() {
+            @Override
+            public void onReady(MediaPipePoseDetector detector) {
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    detector.bind(ARActivity.this, framePool, frameGovernor, perfMetrics);
+                    poseDetector = detector;
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                onPoseError(error);
+            }
+        });
+        setupFramePipeline();
+    }
+
+    private void setupFramePipeline() {
+        for (int i = 0; i < FRAMES_IN_FLIGHT; i++) {
+            freeFrames.offer(new AnalysisFrame());
+        }
+
+        framePipeline = new FramePipeline();
+        convertStage = framePipeline.addStage("convert", 1, this::convertFrame, frame -> {
+            perfMetrics.onFrameDropped();
+            frame.image.close();
+            recycleFrame(frame);
+        });
+        inferStage = framePipeline.addStage("infer", 1, this::inferFrame, frame -> {
+            perfMetrics.onFrameDropped();
+            framePool.releaseBitmap(frame.bitmap);
+            recycleFrame(frame);
+        });
+        placeStage = framePipeline.addStage("place", 1, ContextCompat.getMainExecutor(this),
+                this::applyPoseUpdate, frame -> {
+                    perfMetrics.onFrameDropped();
+                    frame.release();
+                });
+        convertStage.setNext(inferStage);
+    }
+
+    // Files land in the app's external files dir under recordings/ and are read by FrameReplayer
+    private void startRecording() {
+        File dir = new File(getExternalFilesDir(null), "recordings");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Cannot create recording directory " + dir);
+            return;
+        }
+        File file = new File(dir, "ar-" + System.currentTimeMillis() + ".lffr");
+        try {
+            frameRecorder = new FrameRecorder(file, MAX_RECORDED_FRAMES);
+            Log.d(TAG, "Recording frames to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start frame recording: " + e.getMessage(), e);
+        }
+    }
+
+    private void stopRecording() {
+        FrameRecorder recorder = frameRecorder;
+        if (recorder == null) return;
+        frameRecorder = null;
+        try {
+            recorder.close();
+            Log.d(TAG, "Frame recording finished: " + recorder.describe());
+        } catch (IOException e) {
+            Log.e(TAG, "Frame recording failed: " + e.getMessage(), e);
+        }
     }
 
     private void setupClickListeners() {
@@ -116,6 +245,52 @@ public class ARActivity extends AppCompatActivity implements MediaPipePoseDetect
             poseOverlay.setVisibility(isVisible ? View.GONE : View.VISIBLE);
             btnTogglePoseView.setText(isVisible ? "Show Pose" : "Hide Pose");
         });
+
+        btnTogglePerfHud.setOnClickListener(v -> {
+            boolean isVisible = tvPerfHud.getVisibility() == View.VISIBLE;
+            tvPerfHud.setVisibility(isVisible ? View.GONE : View.VISIBLE);
+            btnTogglePerfHud.setText(isVisible ? "Show Stats" : "Hide Stats");
+            mainHandler.removeCallbacks(hudRefresh);
+            if (!isVisible) {
+                perfMetrics.sampleFps(System.nanoTime());
+                refreshPerfHud();
+            }
+        });
+
+        btnTogglePerfHud.setOnLongClickListener(v -> {
+            sharePerfReport();
+            return true;
+        });
+    }
+
+    private void refreshPerfHud() {
+        if (isDestroyed() || tvPerfHud.getVisibility() != View.VISIBLE) return;
+        hudText.setLength(0);
+        perfMetrics.appendSummary(hudText, perfMetrics.sampleFps(System.nanoTime()));
+        tvPerfHud.setText(hudText);
+        mainHandler.postDelayed(hudRefresh, HUD_REFRESH_MS);
+    }
+
+    private String buildPerfReport() {
+        return perfMetrics.dump()
+                + "pipeline: " + (framePipeline != null ? framePipeline.describe() : "none") + "\n"
+                + "frame pool: " + framePool.describe() + "\n"
+                + "governor: " + frameGovernor.describe() + "\n"
+                + "roi tracked/full: " + roiTracker.getTrackedFrames() + "/" + roiTracker.getFullFrames() + "\n";
+    }
+
+    // Plain-text dump for bug reports, handed to whatever app the user picks
+    private void sharePerfReport() {
+        try {
+            Intent intent = new Intent(Intent.ACTION_SEND);
+            intent.setType("text/plain");
+            intent.putExtra(Intent.EXTRA_SUBJECT, "Let's Fit It AR performance report");
+            intent.putExtra(Intent.EXTRA_TEXT, buildPerfReport());
+            startActivity(Intent.createChooser(intent, "Share performance report"));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to share performance report: " + e.getMessage(), e);
+            Toast.makeText(this, "Unable to share report", Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void updatePoseStatus() {
@@ -146,6 +321,7 @@ public class ARActivity extends AppCompatActivity implements MediaPipePoseDetect
             }
         }, ContextCompat.getMainExecutor(this));
         cameraExecutor = Executors.newSingleThreadExecutor();
+        yuvConverter = new YuvToRgbConverter(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
     }
 
     private void bindCameraUseCases() {
@@ -178,204 +354,268 @@ public class ARActivity extends AppCompatActivity implements MediaPipePoseDetect
         }
     }
 
-    @OptIn(markerClass = ExperimentalGetImage.class)
+    // Capture stage: runs on the CameraX analyzer thread and only hands the frame over.
+    // The ImageProxy stays open until the convert stage (or its recycler) closes it.
     private void analyzeImage(ImageProxy imageProxy) {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastProcessTime < MIN_FRAME_INTERVAL) {
+        long frameStartNanos = FrameRateGovernor.now();
+        if (!frameGovernor.shouldAccept(frameStartNanos)) {
             imageProxy.close();
             return;
         }
-        lastProcessTime = currentTime;
 
-        if (imageProxy.getImage() == null) {
+        AnalysisFrame frame = freeFrames.poll();
+        if (frame == null) {
+            perfMetrics.onFrameDropped();
             imageProxy.close();
             return;
         }
 
+        frame.image = imageProxy;
+        frame.rotation = imageProxy.getImageInfo().getRotationDegrees();
+        frame.startNanos = frameStartNanos;
+        convertStage.offer(frame);
+    }
+
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    private AnalysisFrame convertFrame(AnalysisFrame frame) {
+        ImageProxy imageProxy = frame.image;
+        frame.image = null;
         try {
-            Bitmap bitmap = ImageUtils.imageToBitmap(imageProxy);
-            if (bitmap == null) {
-                imageProxy.close();
-                return;
+            if (imageProxy.getImage() == null) {
+                perfMetrics.onFrameDropped();
+                recycleFrame(frame);
+                return null;
             }
 
-            int rotationDegrees = imageProxy.getImageInfo().getRotationDegrees();
-
+            FrameRecorder recorder = frameRecorder;
+            if (recorder != null) {
+                ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
+                recorder.recordFrame(frame.startNanos, imageProxy.getWidth(), imageProxy.getHeight(), frame.rotation,
+                        planes[0].getBuffer(), planes[0].getRowStride(),
+                        planes[1].getBuffer(), planes[2].getBuffer(),
+                        planes[1].getRowStride(), planes[1].getPixelStride());
+            }
 
-            poseDetector.processFrame(bitmap, rotationDegrees);
+            long convertStart = System.nanoTime();
+            analysisWidth = imageProxy.getWidth();
+            analysisHeight = imageProxy.getHeight();
 
-            Log.d(TAG, "Processing frame - Size: " + bitmap.getWidth() + "x" + bitmap.getHeight() +
-                    ", Rotation: " + rotationDegrees + ", FrontCamera: " + isFrontCamera);
+            // Only the tracked body region is converted, downsampled to roughly the detector's input size
+            roiTracker.computeCrop(imageProxy.getWidth(), imageProxy.getHeight(), frame.crop);
+            Bitmap bitmap = ImageUtils.imageRegionToBitmap(imageProxy, yuvConverter, framePool, frame.crop);
+            if (bitmap == null) {
+                perfMetrics.onFrameDropped();
+                recycleFrame(frame);
+                return null;
+            }
+            frame.bitmap = bitmap;
+            perfMetrics.record(PerfMetrics.Stage.CONVERT, System.nanoTime() - convertStart);
 
+            FrameTrace.event(FrameTrace.FRAME_CONVERTED, bitmap.getWidth(), bitmap.getHeight(), frame.rotation);
+            return frame;
         } catch (Exception e) {
             Log.e(TAG, "Failed to process image: " + e.getMessage(), e);
+            FrameTrace.dumpOnError("image conversion failed");
+            perfMetrics.onFrameDropped();
+            recycleFrame(frame);
+            return null;
         } finally {
             imageProxy.close();
         }
     }
 
-    @Override
-    public void onPoseDetected(Map<Integer, float[]> landmarks, int rotation) {
-        runOnUiThread(() -> {
-            positionClothingOnBody(landmarks, rotation);
-            updatePoseOverlay(landmarks, rotation);
-            isPoseDetected = true;
-            updatePoseStatus();
-        });
-    }
+    private Void inferFrame(AnalysisFrame frame) {
+        Bitmap bitmap = frame.bitmap;
+        frame.bitmap = null;
+        int rotation = frame.rotation;
+        long startNanos = frame.startNanos;
+        RoiTracker.Crop crop = frame.crop;
+        float offsetX = crop.offsetX();
+        float offsetY = crop.offsetY();
+        float scaleX = crop.scaleX();
+        float scaleY = crop.scaleY();
+        recycleFrame(frame);
+
+        MediaPipePoseDetector detector = poseDetector;
+        if (detector == null) {
+            FrameTrace.event(FrameTrace.DETECTOR_NOT_READY);
+            perfMetrics.onFrameDropped();
+            framePool.releaseBitmap(bitmap);
+            return null;
+        }
 
-    @Override
-    public void onPoseUpdate(Map<Integer, float[]> landmarks, int rotation) {
-        runOnUiThread(() -> updatePoseOverlay(landmarks, rotation));
+        // The detector returns the bitmap to framePool once it is done with it
+        detector.processFrame(bitmap, rotation, startNanos, offsetX, offsetY, scaleX, scaleY);
+        return null;
     }
 
-    @Override
-    public void onPoseError(String error) {
-        runOnUiThread(() -> tvPoseStatus.setText("Pose: Error - " + error));
+    private void recycleFrame(AnalysisFrame frame) {
+        frame.image = null;
+        frame.bitmap = null;
+        freeFrames.offer(frame);
     }
 
-    private void updatePoseOverlay(Map<Integer, float[]> landmarks, int rotation) {
-        if (poseOverlay == null || poseOverlay.getVisibility() != View.VISIBLE) return;
-
-        int viewWidth = previewView.getWidth();
-        int viewHeight = previewView.getHeight();
-        if (viewWidth == 0 || viewHeight == 0) return;
-
-        List<float[]> keypoints = new ArrayList<>();
-
-        for (float[] landmark : landmarks.values()) {
-            if (landmark.length < 2) continue;
-            float normX = landmark[0];
-            float normY = landmark[1];
-
-            float screenX, screenY;
-
-            if (rotation == 270 && isFrontCamera) {
-
-                screenX = normY * viewWidth;
-                screenY = (1 - normX) * viewHeight;
-
-                screenX = viewWidth - screenX;
-            } else {
-
-                screenX = isFrontCamera ? (1 - normX) * viewWidth : normX * viewWidth;
-                screenY = normY * viewHeight;
+    private Void applyPoseUpdate(PoseFrame frame) {
+        perfMetrics.record(PerfMetrics.Stage.DELIVER, System.nanoTime() - frame.getResultNanos());
+        perfMetrics.onFrameProcessed();
+        try {
+            poseSmoother.update(frame, frame.getTimestampMs() * 1_000_000L);
+            if (frame.hasAll(SHOULDERS) && !isPoseDetected) {
+                isPoseDetected = true;
+                updatePoseStatus();
             }
-
-            keypoints.add(new float[]{screenX, screenY});
+        } finally {
+            frame.release();
         }
+        scheduleVsync();
+        return null;
+    }
 
-        poseOverlay.setKeypoints(keypoints);
-
-        if (landmarks.containsKey(11) && landmarks.containsKey(12)) {
-            float[] leftShoulder = landmarks.get(11);
-            float[] rightShoulder = landmarks.get(12);
-            Log.d(TAG, String.format("Rotation %d - Shoulders - L(%.3f,%.3f) R(%.3f,%.3f)",
-                    rotation, leftShoulder[0], leftShoulder[1], rightShoulder[0], rightShoulder[1]));
+    private void scheduleVsync() {
+        if (!vsyncScheduled) {
+            vsyncScheduled = true;
+            Choreographer.getInstance().postFrameCallback(vsyncCallback);
         }
     }
 
-    private void positionClothingOnBody(Map<Integer, float[]> landmarks, int rotation) {
-        float[] leftShoulder = landmarks.get(11);
-        float[] rightShoulder = landmarks.get(12);
-        float[] leftHip = landmarks.get(23);
-        float[] rightHip = landmarks.get(24);
-
-        if (leftShoulder == null || rightShoulder == null) {
-            Log.w(TAG, "Shoulder landmarks not found");
-            return;
+    // Result timestamps and vsync times share the monotonic uptime clock, so the prediction also
+    // makes up for the time the frame spent in conversion and inference
+    private void onVsync(long frameTimeNanos) {
+        vsyncScheduled = false;
+        if (isDestroyed()) return;
+        if (frameTimeNanos - poseSmoother.getLastUpdateNanos() > POSE_STALE_NANOS) return;
+        if (!poseSmoother.predict(frameTimeNanos, displayFrame)) return;
+
+        if (updateViewTransform(displayFrame.getRotation())) {
+            long placeStart = System.nanoTime();
+            FrameTrace.begin("ARActivity:place");
+            try {
+                viewTransform.mapLandmarks(displayFrame, screenPoints);
+                if (displayFrame.hasAll(SHOULDERS)) {
+                    positionClothingOnBody(displayFrame, screenPoints);
+                }
+                updatePoseOverlay(displayFrame, screenPoints);
+            } finally {
+                FrameTrace.end();
+            }
+            perfMetrics.record(PerfMetrics.Stage.PLACE, System.nanoTime() - placeStart);
         }
+        scheduleVsync();
+    }
 
-        int viewWidth = previewView.getWidth();
-        int viewHeight = previewView.getHeight();
-        if (viewWidth == 0 || viewHeight == 0) return;
+    // Cheap when nothing changed; the affine is only rebuilt on rotation, lens, size or scale type changes
+    private boolean updateViewTransform(int rotation) {
+        return viewTransform.update(analysisWidth, analysisHeight, rotation, isFrontCamera,
+                previewView.getWidth(), previewView.getHeight(),
+                CameraViewTransform.ScaleMode.valueOf(previewView.getScaleType().name()));
+    }
 
-        float leftShoulderX, leftShoulderY, rightShoulderX, rightShoulderY;
+    @Override
+    public void onPoseDetected(PoseFrame frame) {
+        recordPose(frame);
+        roiTracker.onPose(frame);
+        placeStage.offer(frame);
+    }
 
-        if (rotation == 270 && isFrontCamera) {
-            // For 270° rotation with front camera
-            leftShoulderX = leftShoulder[1] * viewWidth;
-            leftShoulderY = (1 - leftShoulder[0]) * viewHeight;
-            rightShoulderX = rightShoulder[1] * viewWidth;
-            rightShoulderY = (1 - rightShoulder[0]) * viewHeight;
+    @Override
+    public void onPoseUpdate(PoseFrame frame) {
+        recordPose(frame);
+        roiTracker.onPose(frame);
+        placeStage.offer(frame);
+    }
 
-            // Mirror for front camera
-            leftShoulderX = viewWidth - leftShoulderX;
-            rightShoulderX = viewWidth - rightShoulderX;
-        } else {
-            // Default mapping
-            leftShoulderX = isFrontCamera ? (1 - leftShoulder[0]) * viewWidth : leftShoulder[0] * viewWidth;
-            leftShoulderY = leftShoulder[1] * viewHeight;
-            rightShoulderX = isFrontCamera ? (1 - rightShoulder[0]) * viewWidth : rightShoulder[0] * viewWidth;
-            rightShoulderY = rightShoulder[1] * viewHeight;
-        }
+    private void recordPose(PoseFrame frame) {
+        FrameRecorder recorder = frameRecorder;
+        if (recorder != null) recorder.recordPose(frame);
+    }
 
-        float centerX = (leftShoulderX + rightShoulderX) / 2f;
-        float centerY = (leftShoulderY + rightShoulderY) / 2f;
-        float shoulderWidth = Math.abs(rightShoulderX - leftShoulderX);
+    @Override
+    public void onPoseLost() {
+        perfMetrics.onFrameProcessed();
+        roiTracker.onPoseLost();
+    }
 
-        float hipCenterY = centerY;
-        if (leftHip != null && rightHip != null) {
-            float leftHipY, rightHipY;
+    @Override
+    public void onPoseError(String error) {
+        FrameTrace.dumpOnError("pose error");
+        runOnUiThread(() -> tvPoseStatus.setText("Pose: Error - " + error));
+    }
 
-            if (rotation == 270 && isFrontCamera) {
-                leftHipY = (1 - leftHip[0]) * viewHeight;
-                rightHipY = (1 - rightHip[0]) * viewHeight;
-            } else {
-                leftHipY = leftHip[1] * viewHeight;
-                rightHipY = rightHip[1] * viewHeight;
-            }
+    private void updatePoseOverlay(PoseFrame frame, float[] points) {
+        if (poseOverlay == null || poseOverlay.getVisibility() != View.VISIBLE) return;
 
-            hipCenterY = (leftHipY + rightHipY) / 2f;
-        }
+        // points is already the overlay's buffer; only the batches need rebuilding
+        poseOverlay.commitKeypoints(frame.getPresentMask());
 
-        RelativeLayout.LayoutParams params = (RelativeLayout.LayoutParams) clothingOverlay.getLayoutParams();
-        params.removeRule(RelativeLayout.CENTER_IN_PARENT);
+        if (frame.hasAll(SHOULDERS)) {
+            FrameTrace.event(FrameTrace.SHOULDERS, frame.getRotation(),
+                    frame.x(PoseFrame.LEFT_SHOULDER), frame.y(PoseFrame.LEFT_SHOULDER),
+                    frame.x(PoseFrame.RIGHT_SHOULDER), frame.y(PoseFrame.RIGHT_SHOULDER));
+        }
+    }
 
-        String clothingType = ARDataHolder.getClothingType();
-        Log.d(TAG, "Clothing type: " + clothingType);
-
-        float scaleFactor;
-        int verticalOffset;
-
-        switch (clothingType != null ? clothingType : "unknown") {
-            case "pants":
-            case "shorts":
-                scaleFactor = Math.max(0.7f, Math.min(shoulderWidth * 1.8f / initialClothingWidth, 2.0f));
-                verticalOffset = (int) (hipCenterY - (params.height / 3));
-                break;
-            case "dress":
-                scaleFactor = Math.max(0.8f, Math.min(shoulderWidth * 2.0f / initialClothingWidth, 2.2f));
-                verticalOffset = (int) (centerY - (params.height / 6));
-                break;
-            case "shirt":
-            case "jacket":
-            default:
-                scaleFactor = Math.max(0.6f, Math.min(shoulderWidth * 2.2f / initialClothingWidth, 2.0f));
-                verticalOffset = (int) (centerY - (params.height / 4));
-                break;
+    // points holds the view-space landmarks produced by viewTransform for this frame.
+    // Only the overlay's draw matrix changes, so this never triggers a layout pass.
+    private void positionClothingOnBody(PoseFrame frame, float[] points) {
+        if (!frame.hasAll(SHOULDERS)) {
+            FrameTrace.event(FrameTrace.SHOULDERS_MISSING);
+            return;
         }
 
-        params.width = (int) (initialClothingWidth * scaleFactor);
-        params.height = (int) (initialClothingHeight * scaleFactor);
+        String clothingType = ARDataHolder.getClothingType();
 
-        params.leftMargin = (int) (centerX - (params.width / 2));
-        params.topMargin = (int) Math.max(0, Math.min(verticalOffset, viewHeight - params.height));
+        garmentPlacement.compute(clothingType, points, frame.hasAll(HIPS), previewView.getHeight(),
+                initialClothingWidth, initialClothingHeight);
+        clothingOverlay.setPlacement(garmentPlacement);
+        if (clothingOverlay.getVisibility() != View.VISIBLE) {
+            clothingOverlay.setVisibility(View.VISIBLE);
+        }
 
-        clothingOverlay.setLayoutParams(params);
-        clothingOverlay.setVisibility(View.VISIBLE);
+        FrameTrace.event(FrameTrace.PLACEMENT, frame.getRotation(), garmentPlacement.left, garmentPlacement.top,
+                garmentPlacement.scale, garmentPlacement.rotationDegrees);
+    }
 
-        Log.d(TAG, String.format("Clothing - Type: %s, Scale: %.2f, Pos: (%d, %d), Size: %dx%d, Rotation: %d",
-                clothingType, scaleFactor, params.leftMargin, params.topMargin, params.width, params.height, rotation));
+    // Unbinds everything this activity lent the shared detector. Runs on the main thread in onDestroy,
+    // and only clears bindings that are still ours: a new ARActivity may already have bound itself.
+    private void unbindPoseDetector() {
+        MediaPipePoseDetector detector = poseDetector;
+        poseDetector = null;
+        if (detector != null) {
+            detector.unbind(this);
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (poseDetector != null) poseDetector.cleanup();
+        Choreographer.getInstance().removeFrameCallback(vsyncCallback);
+        mainHandler.removeCallbacks(hudRefresh);
+        try {
+            getWindow().removeOnFrameMetricsAvailableListener(frameMetricsListener);
+        } catch (IllegalArgumentException e) {
+            // Never registered because onCreate failed early
+        }
         if (cameraExecutor != null) {
             cameraExecutor.shutdown();
         }
+        // Frames still in flight are dropped by inferFrame once poseDetector is null. The converter and
+        // our registry reference are released only when the stages are idle; that wait runs off the main thread.
+        unbindPoseDetector();
+        YuvToRgbConverter converter = yuvConverter;
+        boolean releaseDetector = poseDetectorAcquired;
+        poseDetectorAcquired = false;
+        ModelRegistry registry = ModelRegistry.get(this);
+        Runnable releaseFrameResources = () -> {
+            if (converter != null) converter.close();
+            if (releaseDetector) registry.releasePoseDetector();
+        };
+        if (framePipeline != null) {
+            framePipeline.shutdownAsync(PIPELINE_SHUTDOWN_TIMEOUT_MS, releaseFrameResources);
+        } else {
+            releaseFrameResources.run();
+        }
+        stopRecording();
+        Log.d(TAG, "Performance report:\n" + buildPerfReport());
     }
 
     @Override
@@ -390,4 +630,12 @@ public class ARActivity extends AppCompatActivity implements MediaPipePoseDetect
             }
         }
     }
+
+    private static class AnalysisFrame {
+        ImageProxy image;
+        Bitmap bitmap;
+        int rotation;
+        long startNanos;
+        final RoiTracker.Crop crop = new RoiTracker.Crop();
+    }
 }
\ No newline at end of file
@@ -1,21 +1,85 @@
 package com.example.letsfitit;
 
+import android.content.Context;
 import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ARDataHolder {
+    private static final String TAG = "ARDataHolder";
+    private static final String GARMENT_FILE = "current_garment.lfg";
+    // One thread, so overlapping saves never write the same temporary file at once
+    private static final ExecutorService saveExecutor =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "ARDataHolder-save"));
+
     private static Bitmap segmentedBitmap;
     private static List<NetworkService.ClothingItem> detectedItems;
     private static String primaryClothingType;
+    private static String resultBackend;
 
     public static void setSegmentedBitmap(Bitmap bitmap) {
         segmentedBitmap = bitmap;
     }
 
+    // Takes everything a segmentation backend produced in one go
+    public static void setResult(SegmentationResult result) {
+        segmentedBitmap = result.getSegmentedImage();
+        resultBackend = result.getBackend();
+        setDetectedItems(result.getDetectedItems());
+    }
+
+    // Which backend produced the current garment, e.g. "server" or "on-device"
+    public static String getResultBackend() {
+        return resultBackend;
+    }
+
     public static Bitmap getSegmentedBitmap() {
         return segmentedBitmap;
     }
 
+    // Writes the current garment to a GarmentFile in the background, so ARActivity can map it straight
+    // back into a bitmap if the process was killed in between
+    public static void saveGarment(Context context) {
+        Bitmap bitmap = segmentedBitmap;
+        String type = primaryClothingType;
+        if (bitmap == null) return;
+        File file = garmentFile(context);
+        saveExecutor.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                GarmentFile.write(file, bitmap, type, null);
+                Log.d(TAG, "Saved garment in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to save garment", e);
+            }
+        });
+    }
+
+    // Reloads the last saved garment; false when there is none or it cannot be read
+    public static boolean restoreGarment(Context context) {
+        File file = garmentFile(context);
+        if (!file.isFile()) return false;
+        try {
+            long start = System.nanoTime();
+            GarmentFile.Garment garment = GarmentFile.read(file);
+            segmentedBitmap = garment.bitmap;
+            primaryClothingType = garment.type;
+            Log.d(TAG, "Restored " + garment.type + " garment in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to restore garment", e);
+            return false;
+        }
+    }
+
+    private static File garmentFile(Context context) {
+        return new File(context.getFilesDir(), GARMENT_FILE);
+    }
+
     public static void setDetectedItems(List<NetworkService.ClothingItem> items) {
         detectedItems = items;
 
@@ -80,5 +144,6 @@ public class ARDataHolder {
         segmentedBitmap = null;
         detectedItems = null;
         primaryClothingType = null;
+        resultBackend = null;
     }
 }
\ No newline at end of file
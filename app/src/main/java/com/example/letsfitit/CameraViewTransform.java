@@ -0,0 +1,174 @@
+package com.example.letsfitit;
+
+// Maps normalized analysis-buffer coordinates (what the pose detector returns) to PreviewView pixels.
+// The mapping is one 2x3 affine rebuilt only when rotation, lens facing, analysis size, view size or
+// scale mode change, then applied to whole landmark arrays at once.
+public class CameraViewTransform {
+    // Mirrors PreviewView.ScaleType so this class stays free of Android dependencies
+    public enum ScaleMode {
+        FILL_START, FILL_CENTER, FILL_END, FIT_START, FIT_CENTER, FIT_END
+    }
+
+    // x' = a * u + b * v + c,  y' = d * u + e * v + f
+    private final float[] affine = new float[6];
+    private final float[] scratch = new float[2];
+
+    private int analysisWidth = -1;
+    private int analysisHeight = -1;
+    private int rotationDegrees = -1;
+    private boolean mirrored;
+    private int viewWidth = -1;
+    private int viewHeight = -1;
+    private ScaleMode scaleMode;
+    private long rebuilds = 0;
+
+    // Returns true if the transform is usable; rebuilds only when one of the inputs changed.
+    public boolean update(int analysisWidth, int analysisHeight, int rotationDegrees, boolean mirrored,
+                          int viewWidth, int viewHeight, ScaleMode scaleMode) {
+        if (analysisWidth <= 0 || analysisHeight <= 0 || viewWidth <= 0 || viewHeight <= 0) {
+            return false;
+        }
+        if (rotationDegrees % 90 != 0) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotationDegrees);
+        }
+        rotationDegrees = ((rotationDegrees % 360) + 360) % 360;
+
+        if (analysisWidth == this.analysisWidth && analysisHeight == this.analysisHeight
+                && rotationDegrees == this.rotationDegrees && mirrored == this.mirrored
+                && viewWidth == this.viewWidth && viewHeight == this.viewHeight && scaleMode == this.scaleMode) {
+            return true;
+        }
+
+        this.analysisWidth = analysisWidth;
+        this.analysisHeight = analysisHeight;
+        this.rotationDegrees = rotationDegrees;
+        this.mirrored = mirrored;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.scaleMode = scaleMode;
+        rebuild();
+        return true;
+    }
+
+    // The pipeline is affine, so it is fully determined by where the origin and the two unit axes land
+    private void rebuild() {
+        mapSlow(0f, 0f, scratch);
+        float originX = scratch[0], originY = scratch[1];
+        mapSlow(1f, 0f, scratch);
+        float uX = scratch[0], uY = scratch[1];
+        mapSlow(0f, 1f, scratch);
+        float vX = scratch[0], vY = scratch[1];
+
+        affine[0] = uX - originX;
+        affine[1] = vX - originX;
+        affine[2] = originX;
+        affine[3] = uY - originY;
+        affine[4] = vY - originY;
+        affine[5] = originY;
+        rebuilds++;
+    }
+
+    // Reference mapping: buffer pixels -> rotate to upright -> mirror -> scale/offset into the view
+    private void mapSlow(float u, float v, float[] out) {
+        float x = u * analysisWidth;
+        float y = v * analysisHeight;
+        boolean swap = rotationDegrees == 90 || rotationDegrees == 270;
+        float uprightWidth = swap ? analysisHeight : analysisWidth;
+        float uprightHeight = swap ? analysisWidth : analysisHeight;
+
+        float rx, ry;
+        switch (rotationDegrees) {
+            case 90:
+                rx = analysisHeight - y;
+                ry = x;
+                break;
+            case 180:
+                rx = analysisWidth - x;
+                ry = analysisHeight - y;
+                break;
+            case 270:
+                rx = y;
+                ry = analysisWidth - x;
+                break;
+            default:
+                rx = x;
+                ry = y;
+                break;
+        }
+
+        if (mirrored) {
+            rx = uprightWidth - rx;
+        }
+
+        boolean fill = scaleMode == ScaleMode.FILL_START || scaleMode == ScaleMode.FILL_CENTER
+                || scaleMode == ScaleMode.FILL_END;
+        float scale = fill
+                ? Math.max(viewWidth / uprightWidth, viewHeight / uprightHeight)
+                : Math.min(viewWidth / uprightWidth, viewHeight / uprightHeight);
+        float extraX = viewWidth - uprightWidth * scale;
+        float extraY = viewHeight - uprightHeight * scale;
+
+        float offsetX, offsetY;
+        switch (scaleMode) {
+            case FILL_START:
+            case FIT_START:
+                offsetX = 0f;
+                offsetY = 0f;
+                break;
+            case FILL_END:
+            case FIT_END:
+                offsetX = extraX;
+                offsetY = extraY;
+                break;
+            default:
+                offsetX = extraX / 2f;
+                offsetY = extraY / 2f;
+                break;
+        }
+
+        out[0] = rx * scale + offsetX;
+        out[1] = ry * scale + offsetY;
+    }
+
+    // Maps every landmark of frame into dst as (x, y) pairs indexed by landmark.
+    public void mapLandmarks(PoseFrame frame, float[] dst) {
+        float[] src = frame.getData();
+        float a = affine[0], b = affine[1], c = affine[2];
+        float d = affine[3], e = affine[4], f = affine[5];
+        for (int i = 0; i < PoseFrame.LANDMARK_COUNT; i++) {
+            float u = src[i * PoseFrame.STRIDE + PoseFrame.X];
+            float v = src[i * PoseFrame.STRIDE + PoseFrame.Y];
+            dst[i * 2] = a * u + b * v + c;
+            dst[i * 2 + 1] = d * u + e * v + f;
+        }
+    }
+
+    // Maps count (u, v) pairs in place.
+    public void mapPoints(float[] points, int count) {
+        float a = affine[0], b = affine[1], c = affine[2];
+        float d = affine[3], e = affine[4], f = affine[5];
+        for (int i = 0; i < count; i++) {
+            float u = points[i * 2];
+            float v = points[i * 2 + 1];
+            points[i * 2] = a * u + b * v + c;
+            points[i * 2 + 1] = d * u + e * v + f;
+        }
+    }
+
+    // Writes the transform as a row-major 3x3 matrix, the layout android.graphics.Matrix.setValues expects.
+    public void getMatrixValues(float[] out9) {
+        out9[0] = affine[0];
+        out9[1] = affine[1];
+        out9[2] = affine[2];
+        out9[3] = affine[3];
+        out9[4] = affine[4];
+        out9[5] = affine[5];
+        out9[6] = 0f;
+        out9[7] = 0f;
+        out9[8] = 1f;
+    }
+
+    public long getRebuildCount() {
+        return rebuilds;
+    }
+}
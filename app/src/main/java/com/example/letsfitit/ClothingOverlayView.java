@@ -0,0 +1,95 @@
+package com.example.letsfitit;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+// Draws the garment bitmap through a transform matrix. Moving, scaling or tilting the garment
+// only rebuilds the matrix and invalidates; the view itself never changes size, so there is no
+// layout pass per pose update.
+public class ClothingOverlayView extends View {
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+    private final Matrix garmentMatrix = new Matrix();
+    private Bitmap garment;
+    private float defaultWidth = 400f;
+    private float defaultHeight = 500f;
+    private boolean hasPlacement = false;
+
+    public ClothingOverlayView(Context context) {
+        super(context);
+    }
+
+    public ClothingOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public ClothingOverlayView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    public void setGarment(Bitmap bitmap) {
+        garment = bitmap;
+        hasPlacement = false;
+        updateDefaultMatrix();
+        invalidate();
+    }
+
+    public Bitmap getGarment() {
+        return garment;
+    }
+
+    // Size used (centred in the view) until the first pose-driven placement arrives
+    public void setDefaultSize(float width, float height) {
+        defaultWidth = width;
+        defaultHeight = height;
+        if (!hasPlacement) {
+            updateDefaultMatrix();
+            invalidate();
+        }
+    }
+
+    // Maps the garment onto the box (left, top, width, height), rotated by rotationDegrees around (pivotX, pivotY).
+    public void setPlacement(float left, float top, float width, float height,
+                             float rotationDegrees, float pivotX, float pivotY) {
+        if (garment == null) return;
+        garmentMatrix.setScale(width / garment.getWidth(), height / garment.getHeight());
+        garmentMatrix.postTranslate(left, top);
+        if (rotationDegrees != 0f) {
+            garmentMatrix.postRotate(rotationDegrees, pivotX, pivotY);
+        }
+        hasPlacement = true;
+        invalidate();
+    }
+
+    public void setPlacement(GarmentPlacement placement) {
+        setPlacement(placement.left, placement.top, placement.width, placement.height,
+                placement.rotationDegrees, placement.pivotX, placement.pivotY);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (!hasPlacement) {
+            updateDefaultMatrix();
+        }
+    }
+
+    private void updateDefaultMatrix() {
+        if (garment == null) return;
+        float left = (getWidth() - defaultWidth) / 2f;
+        float top = (getHeight() - defaultHeight) / 2f;
+        garmentMatrix.setScale(defaultWidth / garment.getWidth(), defaultHeight / garment.getHeight());
+        garmentMatrix.postTranslate(left, top);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (garment == null || garment.isRecycled()) return;
+        canvas.drawBitmap(garment, garmentMatrix, bitmapPaint);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.letsfitit;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded pool of frame Bitmaps and ARGB scratch buffers, keyed by size and config.
+// Lookups scan a small fixed bucket array so acquire/release never allocate in steady state.
+public class FrameBufferPool {
+    private static final String TAG = "FrameBufferPool";
+    private static final int DEFAULT_MAX_KEYS = 4;
+    private static final int DEFAULT_MAX_PER_KEY = 3;
+
+    private final int maxPerKey;
+    private final BitmapBucket[] bitmapBuckets;
+    private final BufferBucket[] bufferBuckets;
+    private long useCounter = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public FrameBufferPool() {
+        this(DEFAULT_MAX_KEYS, DEFAULT_MAX_PER_KEY);
+    }
+
+    public FrameBufferPool(int maxKeys, int maxPerKey) {
+        this.maxPerKey = maxPerKey;
+        bitmapBuckets = new BitmapBucket[maxKeys];
+        bufferBuckets = new BufferBucket[maxKeys];
+    }
+
+    public synchronized Bitmap acquireBitmap(int width, int height, Bitmap.Config config) {
+        BitmapBucket bucket = findBitmapBucket(width, height, config, false);
+        if (bucket != null && bucket.count > 0) {
+            Bitmap bitmap = bucket.items[--bucket.count];
+            bucket.items[bucket.count] = null;
+            bucket.lastUse = ++useCounter;
+            hits.incrementAndGet();
+            return bitmap;
+        }
+
+        misses.incrementAndGet();
+        allocations.incrementAndGet();
+        Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        allocatedBytes.addAndGet(bitmap.getAllocationByteCount());
+        return bitmap;
+    }
+
+    public synchronized void releaseBitmap(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) return;
+
+        BitmapBucket bucket = findBitmapBucket(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig(), true);
+        for (int i = 0; i < bucket.count; i++) {
+            if (bucket.items[i] == bitmap) return;
+        }
+        if (bucket.count == maxPerKey) {
+            evictions.incrementAndGet();
+            bitmap.recycle();
+            return;
+        }
+        bucket.items[bucket.count++] = bitmap;
+        bucket.lastUse = ++useCounter;
+    }
+
+    public synchronized int[] acquireIntBuffer(int size) {
+        BufferBucket bucket = findBufferBucket(size, false);
+        if (bucket != null && bucket.count > 0) {
+            int[] buffer = bucket.items[--bucket.count];
+            bucket.items[bucket.count] = null;
+            bucket.lastUse = ++useCounter;
+            hits.incrementAndGet();
+            return buffer;
+        }
+
+        misses.incrementAndGet();
+        allocations.incrementAndGet();
+        allocatedBytes.addAndGet(size * 4L);
+        return new int[size];
+    }
+
+    public synchronized void releaseIntBuffer(int[] buffer) {
+        if (buffer == null) return;
+
+        BufferBucket bucket = findBufferBucket(buffer.length, true);
+        for (int i = 0; i < bucket.count; i++) {
+            if (bucket.items[i] == buffer) return;
+        }
+        if (bucket.count == maxPerKey) {
+            evictions.incrementAndGet();
+            return;
+        }
+        bucket.items[bucket.count++] = buffer;
+        bucket.lastUse = ++useCounter;
+    }
+
+    private BitmapBucket findBitmapBucket(int width, int height, Bitmap.Config config, boolean create) {
+        int free = -1;
+        int oldest = 0;
+        for (int i = 0; i < bitmapBuckets.length; i++) {
+            BitmapBucket bucket = bitmapBuckets[i];
+            if (bucket == null) {
+                if (free < 0) free = i;
+                continue;
+            }
+            if (bucket.width == width && bucket.height == height && bucket.config == config) {
+                return bucket;
+            }
+            if (bitmapBuckets[oldest] == null || bucket.lastUse < bitmapBuckets[oldest].lastUse) {
+                oldest = i;
+            }
+        }
+        if (!create) return null;
+
+        // Resolution changed and every slot is taken: drop the least recently used size
+        int slot = free >= 0 ? free : oldest;
+        BitmapBucket evicted = bitmapBuckets[slot];
+        if (evicted != null) {
+            for (int i = 0; i < evicted.count; i++) {
+                evicted.items[i].recycle();
+                evictions.incrementAndGet();
+            }
+        }
+        BitmapBucket bucket = new BitmapBucket(width, height, config, maxPerKey);
+        bitmapBuckets[slot] = bucket;
+        return bucket;
+    }
+
+    private BufferBucket findBufferBucket(int size, boolean create) {
+        int free = -1;
+        int oldest = 0;
+        for (int i = 0; i < bufferBuckets.length; i++) {
+            BufferBucket bucket = bufferBuckets[i];
+            if (bucket == null) {
+                if (free < 0) free = i;
+                continue;
+            }
+            if (bucket.size == size) {
+                return bucket;
+            }
+            if (bufferBuckets[oldest] == null || bucket.lastUse < bufferBuckets[oldest].lastUse) {
+                oldest = i;
+            }
+        }
+        if (!create) return null;
+
+        int slot = free >= 0 ? free : oldest;
+        BufferBucket evicted = bufferBuckets[slot];
+        if (evicted != null) {
+            evictions.addAndGet(evicted.count);
+        }
+        BufferBucket bucket = new BufferBucket(size, maxPerKey);
+        bufferBuckets[slot] = bucket;
+        return bucket;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < bitmapBuckets.length; i++) {
+            BitmapBucket bucket = bitmapBuckets[i];
+            if (bucket == null) continue;
+            for (int j = 0; j < bucket.count; j++) {
+                bucket.items[j].recycle();
+            }
+            bitmapBuckets[i] = null;
+        }
+        for (int i = 0; i < bufferBuckets.length; i++) {
+            bufferBuckets[i] = null;
+        }
+        Log.d(TAG, "Pool cleared - " + describe());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public String describe() {
+        return "hits=" + hits.get() + " misses=" + misses.get() + " allocations=" + allocations.get()
+                + " allocatedBytes=" + allocatedBytes.get() + " evictions=" + evictions.get();
+    }
+
+    private static class BitmapBucket {
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+        final Bitmap[] items;
+        int count;
+        long lastUse;
+
+        BitmapBucket(int width, int height, Bitmap.Config config, int capacity) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+            this.items = new Bitmap[capacity];
+        }
+    }
+
+    private static class BufferBucket {
+        final int size;
+        final int[][] items;
+        int count;
+        long lastUse;
+
+        BufferBucket(int size, int capacity) {
+            this.size = size;
+            this.items = new int[capacity][];
+        }
+    }
+}
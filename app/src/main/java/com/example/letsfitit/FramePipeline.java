@@ -0,0 +1,295 @@
+package com.example.letsfitit;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Small staged frame processor. Each stage drains a bounded hand-off slot on its own executor,
+// so stage N can work on frame K+1 while stage N+1 is still busy with frame K.
+// When a slot is full the oldest item is dropped and handed to the stage's Recycler.
+public class FramePipeline {
+    private static final String TAG = "FramePipeline";
+    private static final float LATENCY_SMOOTHING = 0.1f;
+
+    // A processor owns its input: it must release it (or pass it on as output) even when it throws.
+    public interface Processor<I, O> {
+        O process(I input) throws Exception;
+    }
+
+    // Releases items that never reached the processor (dropped, or still queued at shutdown).
+    public interface Recycler<T> {
+        void recycle(T item);
+    }
+
+    private final List<Stage<?, ?>> stages = new ArrayList<>();
+    private final List<ExecutorService> ownedExecutors = new ArrayList<>();
+    private volatile boolean running = true;
+
+    // Adds a stage backed by its own dedicated thread.
+    public <I, O> Stage<I, O> addStage(String name, int capacity, Processor<I, O> processor, Recycler<I> recycler) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "FramePipeline-" + name));
+        ownedExecutors.add(executor);
+        return addStage(name, capacity, executor, processor, recycler);
+    }
+
+    // Adds a stage that runs on an existing executor, e.g. the main thread for view updates.
+    public <I, O> Stage<I, O> addStage(String name, int capacity, Executor executor,
+                                       Processor<I, O> processor, Recycler<I> recycler) {
+        Stage<I, O> stage = new Stage<>(this, name, capacity, executor, processor, recycler);
+        stages.add(stage);
+        return stage;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stops accepting work, recycles everything still queued and waits up to timeoutMs in total for
+    // in-flight items to finish.
+    public void shutdown(long timeoutMs) {
+        stopAccepting();
+        awaitStages(timeoutMs);
+    }
+
+    // Same as shutdown(), but only the non-blocking part runs on the caller (typically the main thread in
+    // onDestroy). The wait happens on a background thread, which then runs onTerminated, so anything the
+    // stages use can be closed there once they are idle.
+    public void shutdownAsync(long timeoutMs, Runnable onTerminated) {
+        stopAccepting();
+        new Thread(() -> {
+            awaitStages(timeoutMs);
+            if (onTerminated != null) onTerminated.run();
+        }, "FramePipeline-shutdown").start();
+    }
+
+    private void stopAccepting() {
+        running = false;
+        for (Stage<?, ?> stage : stages) {
+            stage.drainAndRecycle();
+        }
+        for (ExecutorService executor : ownedExecutors) {
+            executor.shutdown();
+        }
+    }
+
+    // One deadline shared by all stages, so the wait is bounded by timeoutMs however many there are
+    private void awaitStages(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            for (ExecutorService executor : ownedExecutors) {
+                long remaining = Math.max(0L, deadline - System.nanoTime());
+                if (!executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    Log.w(TAG, "Stage executor did not finish within " + timeoutMs + "ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Items forwarded by a stage that was finishing while we shut down
+        for (Stage<?, ?> stage : stages) {
+            stage.drainAndRecycle();
+        }
+        Log.d(TAG, "Pipeline shut down - " + describe());
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage<?, ?> stage : stages) {
+            if (sb.length() > 0) sb.append(" | ");
+            sb.append(stage.describe());
+        }
+        return sb.toString();
+    }
+
+    public static class Stage<I, O> {
+        private final FramePipeline pipeline;
+        private final String name;
+        private final Executor executor;
+        private final Processor<I, O> processor;
+        private final Recycler<I> recycler;
+        private final String traceSection;
+        private final Object[] slot;
+        private final Runnable drainTask = this::drain;
+        private Stage<O, ?> next;
+
+        private int head = 0;
+        private int size = 0;
+        private boolean scheduled = false;
+
+        private volatile long processed = 0;
+        private volatile long dropped = 0;
+        private volatile long failures = 0;
+        private volatile long lastLatencyNanos = 0;
+        private volatile long averageLatencyNanos = 0;
+
+        Stage(FramePipeline pipeline, String name, int capacity, Executor executor,
+              Processor<I, O> processor, Recycler<I> recycler) {
+            if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+            this.pipeline = pipeline;
+            this.name = name;
+            this.executor = executor;
+            this.processor = processor;
+            this.recycler = recycler;
+            this.traceSection = "FramePipeline:" + name;
+            this.slot = new Object[capacity];
+        }
+
+        public void setNext(Stage<O, ?> next) {
+            this.next = next;
+        }
+
+        // Hands an item to this stage. Returns false when the pipeline is shut down and the item was recycled.
+        public boolean offer(I item) {
+            if (!pipeline.running) {
+                recycle(item);
+                return false;
+            }
+
+            I evicted = null;
+            boolean schedule = false;
+            synchronized (slot) {
+                if (size == slot.length) {
+                    evicted = poll();
+                    dropped++;
+                }
+                slot[(head + size) % slot.length] = item;
+                size++;
+                if (!scheduled) {
+                    scheduled = true;
+                    schedule = true;
+                }
+            }
+
+            if (evicted != null) recycle(evicted);
+            if (schedule) {
+                try {
+                    executor.execute(drainTask);
+                } catch (RuntimeException e) {
+                    // Executor already shut down; nobody will drain the slot anymore
+                    synchronized (slot) {
+                        scheduled = false;
+                    }
+                    drainAndRecycle();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private I poll() {
+            if (size == 0) return null;
+            I item = (I) slot[head];
+            slot[head] = null;
+            head = (head + 1) % slot.length;
+            size--;
+            return item;
+        }
+
+        private void drain() {
+            while (true) {
+                I item;
+                synchronized (slot) {
+                    item = poll();
+                    if (item == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+
+                if (!pipeline.running) {
+                    recycle(item);
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                O output = null;
+                FrameTrace.begin(traceSection);
+                try {
+                    output = processor.process(item);
+                } catch (Exception e) {
+                    failures++;
+                    Log.e(TAG, "Stage " + name + " failed: " + e.getMessage(), e);
+                    FrameTrace.dumpOnError("stage " + name + " failed");
+                } finally {
+                    FrameTrace.end();
+                }
+                recordLatency(System.nanoTime() - start);
+                processed++;
+
+                if (output != null && next != null) {
+                    next.offer(output);
+                }
+            }
+        }
+
+        private void recordLatency(long latency) {
+            lastLatencyNanos = latency;
+            long average = averageLatencyNanos;
+            averageLatencyNanos = average == 0 ? latency : average + (long) (LATENCY_SMOOTHING * (latency - average));
+        }
+
+        void drainAndRecycle() {
+            while (true) {
+                I item;
+                synchronized (slot) {
+                    item = poll();
+                }
+                if (item == null) return;
+                recycle(item);
+            }
+        }
+
+        private void recycle(I item) {
+            if (recycler == null || item == null) return;
+            try {
+                recycler.recycle(item);
+            } catch (Exception e) {
+                Log.e(TAG, "Stage " + name + " recycler failed: " + e.getMessage(), e);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            synchronized (slot) {
+                return size;
+            }
+        }
+
+        public long getProcessedCount() {
+            return processed;
+        }
+
+        public long getDroppedCount() {
+            return dropped;
+        }
+
+        public long getFailureCount() {
+            return failures;
+        }
+
+        public long getLastLatencyNanos() {
+            return lastLatencyNanos;
+        }
+
+        public long getAverageLatencyNanos() {
+            return averageLatencyNanos;
+        }
+
+        public String describe() {
+            return name + ": depth=" + getQueueDepth()
+                    + " processed=" + processed
+                    + " dropped=" + dropped
+                    + " failed=" + failures
+                    + " avg=" + (averageLatencyNanos / 1_000_000f) + "ms";
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.letsfitit;
+
+import java.util.Arrays;
+
+// Decides which camera frames enter the pose pipeline.
+// It tracks a moving percentile of end-to-end (conversion + inference) latency on the monotonic clock
+// and spaces accepted frames so the pipeline stays busy for at most targetUtilization of the time,
+// never exceeding maxFps.
+public class FrameRateGovernor {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final float RATE_SMOOTHING = 0.1f;
+
+    private float maxFps;
+    private float targetUtilization;
+    private float percentile;
+
+    private final long[] latencyWindow;
+    private final long[] sortScratch;
+    private int latencyCount = 0;
+    private int latencyIndex = 0;
+    private long latencyPercentileNanos = 0;
+
+    private long intervalNanos;
+    private long lastAcceptedNanos = -1;
+    private long lastOfferedNanos = -1;
+    private float offeredFps = 0f;
+    private float acceptedFps = 0f;
+    private boolean lastDecision = false;
+
+    private long acceptedFrames = 0;
+    private long skippedFrames = 0;
+    private long completedFrames = 0;
+
+    public FrameRateGovernor(float maxFps, float targetUtilization) {
+        this(maxFps, targetUtilization, 0.9f, 30);
+    }
+
+    public FrameRateGovernor(float maxFps, float targetUtilization, float percentile, int windowSize) {
+        if (maxFps <= 0f) throw new IllegalArgumentException("maxFps must be positive");
+        if (targetUtilization <= 0f || targetUtilization > 1f) {
+            throw new IllegalArgumentException("targetUtilization must be in (0, 1]");
+        }
+        if (percentile < 0f || percentile > 1f) throw new IllegalArgumentException("percentile must be in [0, 1]");
+        this.maxFps = maxFps;
+        this.targetUtilization = targetUtilization;
+        this.percentile = percentile;
+        this.latencyWindow = new long[windowSize];
+        this.sortScratch = new long[windowSize];
+        recomputeInterval();
+    }
+
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    // Called for every frame the camera offers; true means the frame should be processed.
+    public synchronized boolean shouldAccept(long nowNanos) {
+        if (lastOfferedNanos >= 0) {
+            offeredFps = smoothRate(offeredFps, nowNanos - lastOfferedNanos);
+        }
+        lastOfferedNanos = nowNanos;
+
+        lastDecision = lastAcceptedNanos < 0 || nowNanos - lastAcceptedNanos >= intervalNanos;
+        if (lastDecision) {
+            if (lastAcceptedNanos >= 0) {
+                acceptedFps = smoothRate(acceptedFps, nowNanos - lastAcceptedNanos);
+            }
+            lastAcceptedNanos = nowNanos;
+            acceptedFrames++;
+        } else {
+            skippedFrames++;
+        }
+        return lastDecision;
+    }
+
+    // Reports the end-to-end latency of an accepted frame, measured from its acceptance time.
+    public synchronized void onFrameCompleted(long startNanos, long endNanos) {
+        long latency = endNanos - startNanos;
+        if (latency < 0) return;
+
+        latencyWindow[latencyIndex] = latency;
+        latencyIndex = (latencyIndex + 1) % latencyWindow.length;
+        if (latencyCount < latencyWindow.length) latencyCount++;
+        completedFrames++;
+
+        System.arraycopy(latencyWindow, 0, sortScratch, 0, latencyCount);
+        Arrays.sort(sortScratch, 0, latencyCount);
+        int rank = Math.min(latencyCount - 1, (int) (percentile * (latencyCount - 1) + 0.5f));
+        latencyPercentileNanos = sortScratch[rank];
+        recomputeInterval();
+    }
+
+    private void recomputeInterval() {
+        long minInterval = (long) (NANOS_PER_SECOND / maxFps);
+        long loadInterval = (long) (latencyPercentileNanos / targetUtilization);
+        intervalNanos = Math.max(minInterval, loadInterval);
+    }
+
+    private static float smoothRate(float current, long deltaNanos) {
+        if (deltaNanos <= 0) return current;
+        float instant = (float) NANOS_PER_SECOND / deltaNanos;
+        return current == 0f ? instant : current + RATE_SMOOTHING * (instant - current);
+    }
+
+    public synchronized void setMaxFps(float maxFps) {
+        if (maxFps <= 0f) throw new IllegalArgumentException("maxFps must be positive");
+        this.maxFps = maxFps;
+        recomputeInterval();
+    }
+
+    public synchronized void setTargetUtilization(float targetUtilization) {
+        if (targetUtilization <= 0f || targetUtilization > 1f) {
+            throw new IllegalArgumentException("targetUtilization must be in (0, 1]");
+        }
+        this.targetUtilization = targetUtilization;
+        recomputeInterval();
+    }
+
+    public synchronized void reset() {
+        latencyCount = 0;
+        latencyIndex = 0;
+        latencyPercentileNanos = 0;
+        lastAcceptedNanos = -1;
+        lastOfferedNanos = -1;
+        offeredFps = 0f;
+        acceptedFps = 0f;
+        recomputeInterval();
+    }
+
+    public synchronized float getMaxFps() {
+        return maxFps;
+    }
+
+    public synchronized float getTargetUtilization() {
+        return targetUtilization;
+    }
+
+    public synchronized boolean getLastDecision() {
+        return lastDecision;
+    }
+
+    public synchronized long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    public synchronized long getLatencyPercentileNanos() {
+        return latencyPercentileNanos;
+    }
+
+    public synchronized float getOfferedFps() {
+        return offeredFps;
+    }
+
+    public synchronized float getAcceptedFps() {
+        return acceptedFps;
+    }
+
+    public synchronized long getAcceptedFrames() {
+        return acceptedFrames;
+    }
+
+    public synchronized long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    public synchronized long getCompletedFrames() {
+        return completedFrames;
+    }
+
+    public synchronized String describe() {
+        return "maxFps=" + maxFps
+                + " utilization=" + targetUtilization
+                + " p" + Math.round(percentile * 100) + "=" + (latencyPercentileNanos / 1_000_000f) + "ms"
+                + " interval=" + (intervalNanos / 1_000_000f) + "ms"
+                + " offered=" + offeredFps + "fps"
+                + " accepted=" + acceptedFps + "fps"
+                + " frames(accepted/skipped/completed)=" + acceptedFrames + "/" + skippedFrames + "/" + completedFrames;
+    }
+}
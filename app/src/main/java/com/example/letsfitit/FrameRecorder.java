@@ -0,0 +1,197 @@
+package com.example.letsfitit;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Captures analysis frames (raw YUV planes) and detector output to a FrameRecording file so a session
+// can be replayed off-device with FrameReplayer. Callers only copy into a pooled entry; compression and
+// disk writes happen on the recorder's own thread. When that thread falls behind, records are skipped
+// rather than stalling the camera pipeline.
+public class FrameRecorder implements Closeable {
+    private static final int ENTRY_POOL_SIZE = 6;
+
+    private final DataOutputStream out;
+    private final int maxFrames;
+    private final BlockingQueue<Entry> free = new ArrayBlockingQueue<>(ENTRY_POOL_SIZE);
+    private final BlockingQueue<Entry> pending = new ArrayBlockingQueue<>(ENTRY_POOL_SIZE + 1);
+    private final Entry endMarker = new Entry();
+    private final Thread writer;
+
+    private volatile boolean closed = false;
+    private volatile IOException writeError;
+    private volatile long framesRecorded = 0;
+    private volatile long posesRecorded = 0;
+    private volatile long skipped = 0;
+
+    // maxFrames bounds the file size; at most as many poses as frames are kept
+    public FrameRecorder(File file, int maxFrames) throws IOException {
+        this.maxFrames = maxFrames;
+        // Fast compression: YUV planes shrink well enough and the writer has to keep up with the camera
+        out = new DataOutputStream(new DeflaterOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16), new Deflater(Deflater.BEST_SPEED), 1 << 16));
+        out.writeInt(FrameRecording.MAGIC);
+        out.writeInt(FrameRecording.VERSION);
+
+        for (int i = 0; i < ENTRY_POOL_SIZE; i++) {
+            free.offer(new Entry());
+        }
+        writer = new Thread(this::writeLoop, "FrameRecorder");
+        writer.start();
+    }
+
+    // Copies the planes; the buffers are not touched after this returns. Positions are left unchanged.
+    public boolean recordFrame(long startNanos, int width, int height, int rotation,
+                               ByteBuffer yBuffer, int yRowStride,
+                               ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride) {
+        if (closed || framesRecorded >= maxFrames) return false;
+        Entry entry = free.poll();
+        if (entry == null) {
+            skipped++;
+            return false;
+        }
+
+        entry.tag = FrameRecording.TAG_FRAME;
+        entry.startNanos = startNanos;
+        entry.width = width;
+        entry.height = height;
+        entry.rotation = rotation;
+        entry.yRowStride = yRowStride;
+        entry.uvRowStride = uvRowStride;
+        entry.uvPixelStride = uvPixelStride;
+        entry.yLength = yBuffer.remaining();
+        entry.y = copyPlane(yBuffer, entry.y);
+        entry.uLength = uBuffer.remaining();
+        entry.u = copyPlane(uBuffer, entry.u);
+        entry.vLength = vBuffer.remaining();
+        entry.v = copyPlane(vBuffer, entry.v);
+        framesRecorded++;
+        pending.offer(entry);
+        return true;
+    }
+
+    // Records a detector result in full-frame normalized coordinates; frame is only read.
+    public boolean recordPose(PoseFrame frame) {
+        if (closed || framesRecorded == 0 || posesRecorded >= maxFrames) return false;
+        Entry entry = free.poll();
+        if (entry == null) {
+            skipped++;
+            return false;
+        }
+        entry.tag = FrameRecording.TAG_POSE;
+        entry.pose.copyFrom(frame);
+        posesRecorded++;
+        pending.offer(entry);
+        return true;
+    }
+
+    private static byte[] copyPlane(ByteBuffer source, byte[] target) {
+        int length = source.remaining();
+        if (target.length < length) target = new byte[length];
+        source.duplicate().get(target, 0, length);
+        return target;
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Entry entry = pending.take();
+                if (entry == endMarker) break;
+                try {
+                    if (writeError == null) write(entry);
+                } catch (IOException e) {
+                    writeError = e;
+                } finally {
+                    free.offer(entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        out.writeByte(entry.tag);
+        if (entry.tag == FrameRecording.TAG_FRAME) {
+            out.writeLong(entry.startNanos);
+            out.writeInt(entry.width);
+            out.writeInt(entry.height);
+            out.writeInt(entry.rotation);
+            out.writeInt(entry.yRowStride);
+            out.writeInt(entry.uvRowStride);
+            out.writeInt(entry.uvPixelStride);
+            out.writeInt(entry.yLength);
+            out.write(entry.y, 0, entry.yLength);
+            out.writeInt(entry.uLength);
+            out.write(entry.u, 0, entry.uLength);
+            out.writeInt(entry.vLength);
+            out.write(entry.v, 0, entry.vLength);
+        } else {
+            PoseFrame pose = entry.pose;
+            out.writeLong(pose.getFrameStartNanos());
+            out.writeLong(pose.getTimestampMs());
+            out.writeLong(pose.getResultNanos());
+            out.writeInt(pose.getRotation());
+            out.writeLong(pose.getPresentMask());
+            float[] data = pose.getData();
+            for (float value : data) {
+                out.writeFloat(value);
+            }
+        }
+    }
+
+    // Flushes everything queued so far and finishes the file. Throws if any write failed.
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            pending.put(endMarker);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (writeError == null) out.writeByte(FrameRecording.TAG_END);
+        } finally {
+            out.close();
+        }
+        if (writeError != null) throw writeError;
+    }
+
+    public long getFramesRecorded() {
+        return framesRecorded;
+    }
+
+    public long getPosesRecorded() {
+        return posesRecorded;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public String describe() {
+        return "frames=" + framesRecorded + " poses=" + posesRecorded + " skipped=" + skipped;
+    }
+
+    private static class Entry {
+        byte tag;
+        long startNanos;
+        int width, height, rotation;
+        int yRowStride, uvRowStride, uvPixelStride;
+        byte[] y = new byte[0];
+        byte[] u = new byte[0];
+        byte[] v = new byte[0];
+        int yLength, uLength, vLength;
+        final PoseFrame pose = new PoseFrame();
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.letsfitit;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.InflaterInputStream;
+
+// On-disk format shared by FrameRecorder and FrameReplayer: a deflated stream of tagged records.
+//
+//   header: int MAGIC, int VERSION
+//   FRAME:  byte TAG_FRAME, long startNanos, int width, int height, int rotation,
+//           int yRowStride, int uvRowStride, int uvPixelStride, then the Y, U and V planes as (int length, bytes)
+//   POSE:   byte TAG_POSE, long frameStartNanos, long timestampMs, long resultNanos, int rotation,
+//           long presentMask, LANDMARK_COUNT * STRIDE floats (full-frame normalized)
+//   end:    byte TAG_END
+//
+// Frames and poses are written in the order they happened; a pose refers to its camera frame
+// through frameStartNanos. All times are on the monotonic clock.
+public class FrameRecording {
+    public static final int MAGIC = 0x4C464652; // "LFFR"
+    public static final int VERSION = 1;
+    public static final byte TAG_END = 0;
+    public static final byte TAG_FRAME = 1;
+    public static final byte TAG_POSE = 2;
+
+    // One recorded analysis frame; plane arrays are reused between reads and may be longer than the data
+    public static class Frame {
+        public long startNanos;
+        public int width, height, rotation;
+        public int yRowStride, uvRowStride, uvPixelStride;
+        public byte[] y = new byte[0];
+        public byte[] u = new byte[0];
+        public byte[] v = new byte[0];
+        public int yLength, uLength, vLength;
+
+        public ByteBuffer yBuffer() {
+            return ByteBuffer.wrap(y, 0, yLength);
+        }
+
+        public ByteBuffer uBuffer() {
+            return ByteBuffer.wrap(u, 0, uLength);
+        }
+
+        public ByteBuffer vBuffer() {
+            return ByteBuffer.wrap(v, 0, vLength);
+        }
+    }
+
+    // Sequential reader. next() returns the tag of the record now held in frame or pose, or TAG_END.
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final boolean skipPixels;
+        public final Frame frame = new Frame();
+        public final PoseFrame pose = new PoseFrame();
+
+        public Reader(File file) throws IOException {
+            this(file, false);
+        }
+
+        // skipPixels reads frame headers only, for passes that just need the pose track
+        public Reader(File file, boolean skipPixels) throws IOException {
+            this.skipPixels = skipPixels;
+            in = new DataInputStream(new InflaterInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)));
+            try {
+                int magic = in.readInt();
+                int version = in.readInt();
+                if (magic != MAGIC) throw new IOException("Not a frame recording: " + file);
+                if (version != VERSION) throw new IOException("Unsupported recording version " + version);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        public byte next() throws IOException {
+            byte tag;
+            try {
+                tag = in.readByte();
+            } catch (EOFException e) {
+                // A recording cut short (e.g. the app was killed) still replays up to the last whole record
+                return TAG_END;
+            }
+            switch (tag) {
+                case TAG_FRAME:
+                    readFrame();
+                    return tag;
+                case TAG_POSE:
+                    readPose();
+                    return tag;
+                case TAG_END:
+                    return tag;
+                default:
+                    throw new IOException("Corrupt recording, unknown tag " + tag);
+            }
+        }
+
+        private void readFrame() throws IOException {
+            frame.startNanos = in.readLong();
+            frame.width = in.readInt();
+            frame.height = in.readInt();
+            frame.rotation = in.readInt();
+            frame.yRowStride = in.readInt();
+            frame.uvRowStride = in.readInt();
+            frame.uvPixelStride = in.readInt();
+            frame.yLength = in.readInt();
+            frame.y = readPlane(frame.y, frame.yLength);
+            frame.uLength = in.readInt();
+            frame.u = readPlane(frame.u, frame.uLength);
+            frame.vLength = in.readInt();
+            frame.v = readPlane(frame.v, frame.vLength);
+        }
+
+        private byte[] readPlane(byte[] buffer, int length) throws IOException {
+            if (skipPixels) {
+                skipFully(length);
+                return buffer;
+            }
+            if (buffer.length < length) buffer = new byte[length];
+            in.readFully(buffer, 0, length);
+            return buffer;
+        }
+
+        private void skipFully(int length) throws IOException {
+            while (length > 0) {
+                int skipped = in.skipBytes(length);
+                if (skipped <= 0) throw new EOFException();
+                length -= skipped;
+            }
+        }
+
+        private void readPose() throws IOException {
+            long frameStartNanos = in.readLong();
+            long timestampMs = in.readLong();
+            long resultNanos = in.readLong();
+            int rotation = in.readInt();
+            long presentMask = in.readLong();
+
+            pose.reset(timestampMs, rotation);
+            pose.setFrameStartNanos(frameStartNanos);
+            pose.setResultNanos(resultNanos);
+            for (int i = 0; i < PoseFrame.LANDMARK_COUNT; i++) {
+                float x = in.readFloat();
+                float y = in.readFloat();
+                float z = in.readFloat();
+                float visibility = in.readFloat();
+                if ((presentMask & (1L << i)) != 0) {
+                    pose.set(i, x, y, z, visibility);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
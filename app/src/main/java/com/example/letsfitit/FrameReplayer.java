@@ -0,0 +1,209 @@
+package com.example.letsfitit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Replays a FrameRecording through the non-camera half of the AR pipeline on a plain JVM:
+// ROI crop + YUV conversion (the pixel path behind ImageUtils.imageRegionToBitmap), a Detector,
+// pose smoothing, and view mapping + garment placement on a synthetic 60 Hz vsync.
+// With RecordedDetector the run is fully deterministic, so the placement checksum can be used
+// as a regression check and the per-stage histograms as an off-device benchmark.
+public class FrameReplayer {
+    private static final long VSYNC_NANOS = 16_666_667L;
+
+    // Stand-in for the pose detector. Writes landmarks in full-frame normalized coordinates into out
+    // (mapping them back from the crop itself, as MediaPipePoseDetector does) and returns false for no pose.
+    public interface Detector {
+        boolean detect(int[] argb, int width, int height, int rotation, RoiTracker.Crop crop,
+                       long frameStartNanos, PoseFrame out);
+    }
+
+    // Answers every frame with the pose that was recorded for it, ignoring the pixels.
+    public static class RecordedDetector implements Detector {
+        private final Map<Long, PoseFrame> poses;
+
+        private RecordedDetector(Map<Long, PoseFrame> poses) {
+            this.poses = poses;
+        }
+
+        // Reads only the pose track of the recording, skipping frame pixels
+        public static RecordedDetector load(File recording) throws IOException {
+            Map<Long, PoseFrame> poses = new HashMap<>();
+            try (FrameRecording.Reader reader = new FrameRecording.Reader(recording, true)) {
+                byte tag;
+                while ((tag = reader.next()) != FrameRecording.TAG_END) {
+                    if (tag == FrameRecording.TAG_POSE) {
+                        PoseFrame pose = new PoseFrame();
+                        pose.copyFrom(reader.pose);
+                        poses.put(pose.getFrameStartNanos(), pose);
+                    }
+                }
+            }
+            return new RecordedDetector(poses);
+        }
+
+        @Override
+        public boolean detect(int[] argb, int width, int height, int rotation, RoiTracker.Crop crop,
+                              long frameStartNanos, PoseFrame out) {
+            PoseFrame pose = poses.get(frameStartNanos);
+            if (pose == null) return false;
+            out.copyFrom(pose);
+            return true;
+        }
+
+        public int size() {
+            return poses.size();
+        }
+    }
+
+    public static class Result {
+        public long frames;
+        public long posesDetected;
+        public long placements;
+        // Order-sensitive hash of every placement; equal across runs when nothing in the path changed
+        public long placementChecksum = 1125899906842597L;
+        public final PerfMetrics metrics = new PerfMetrics();
+
+        void addPlacement(GarmentPlacement placement) {
+            placements++;
+            mix(placement.left);
+            mix(placement.top);
+            mix(placement.width);
+            mix(placement.height);
+            mix(placement.rotationDegrees);
+        }
+
+        private void mix(float value) {
+            placementChecksum = 31 * placementChecksum + Float.floatToIntBits(value);
+        }
+
+        public String describe() {
+            return "frames=" + frames + " poses=" + posesDetected + " placements=" + placements
+                    + " checksum=" + Long.toHexString(placementChecksum) + "\n" + metrics.dump();
+        }
+    }
+
+    private static final long SHOULDERS = PoseFrame.maskOf(PoseFrame.LEFT_SHOULDER, PoseFrame.RIGHT_SHOULDER);
+    private static final long HIPS = PoseFrame.maskOf(PoseFrame.LEFT_HIP, PoseFrame.RIGHT_HIP);
+
+    private final Detector detector;
+    private final int viewWidth;
+    private final int viewHeight;
+    private final boolean mirrored;
+    private final String clothingType;
+    private final float baseWidth;
+    private final float baseHeight;
+
+    // Single-threaded so timings do not depend on the host's core count
+    private final YuvToRgbConverter converter = new YuvToRgbConverter();
+    private final RoiTracker roiTracker = new RoiTracker();
+    private final RoiTracker.Crop crop = new RoiTracker.Crop();
+    private final PoseSmoother smoother = new PoseSmoother();
+    private final CameraViewTransform viewTransform = new CameraViewTransform();
+    private final GarmentPlacement placement = new GarmentPlacement();
+    private final PoseFrame detected = new PoseFrame();
+    private final PoseFrame display = new PoseFrame();
+    private final float[] screenPoints = new float[PoseFrame.LANDMARK_COUNT * 2];
+    private int[] argb = new int[0];
+
+    // Same defaults as ARActivity: front camera preview, FILL_CENTER, 400x500 base garment size
+    public FrameReplayer(Detector detector, int viewWidth, int viewHeight) {
+        this(detector, viewWidth, viewHeight, true, "shirt", 400f, 500f);
+    }
+
+    public FrameReplayer(Detector detector, int viewWidth, int viewHeight, boolean mirrored,
+                         String clothingType, float baseWidth, float baseHeight) {
+        this.detector = detector;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.mirrored = mirrored;
+        this.clothingType = clothingType;
+        this.baseWidth = baseWidth;
+        this.baseHeight = baseHeight;
+    }
+
+    // Each call starts from fresh tracking and smoothing state, so replays of the same file are comparable.
+    public Result replay(File recording) throws IOException {
+        roiTracker.reset();
+        smoother.reset();
+        Result result = new Result();
+        long nextVsync = -1;
+        int analysisWidth = 0, analysisHeight = 0;
+
+        try (FrameRecording.Reader reader = new FrameRecording.Reader(recording)) {
+            byte tag;
+            while ((tag = reader.next()) != FrameRecording.TAG_END) {
+                if (tag != FrameRecording.TAG_FRAME) continue;
+                FrameRecording.Frame frame = reader.frame;
+
+                // Display frames that fell between the previous camera frame and this one
+                if (nextVsync >= 0) {
+                    for (; nextVsync < frame.startNanos; nextVsync += VSYNC_NANOS) {
+                        place(nextVsync, analysisWidth, analysisHeight, result);
+                    }
+                }
+
+                result.frames++;
+                analysisWidth = frame.width;
+                analysisHeight = frame.height;
+
+                long start = System.nanoTime();
+                roiTracker.computeCrop(frame.width, frame.height, crop);
+                int size = crop.outWidth * crop.outHeight;
+                if (argb.length < size) argb = new int[size];
+                converter.convertRegion(frame.yBuffer(), frame.yRowStride,
+                        frame.uBuffer(), frame.vBuffer(), frame.uvRowStride, frame.uvPixelStride,
+                        crop.left, crop.top, crop.outWidth, crop.outHeight, crop.step, argb);
+                long converted = System.nanoTime();
+                result.metrics.record(PerfMetrics.Stage.CONVERT, converted - start);
+
+                boolean found = detector.detect(argb, crop.outWidth, crop.outHeight, frame.rotation, crop,
+                        frame.startNanos, detected);
+                result.metrics.record(PerfMetrics.Stage.INFER, System.nanoTime() - converted);
+
+                if (found) {
+                    result.posesDetected++;
+                    result.metrics.onFrameProcessed();
+                    roiTracker.onPose(detected);
+                    smoother.update(detected, detected.getTimestampMs() * 1_000_000L);
+                    if (nextVsync < 0) nextVsync = frame.startNanos;
+                } else {
+                    result.metrics.onFrameDropped();
+                    roiTracker.onPoseLost();
+                }
+            }
+        }
+        return result;
+    }
+
+    // Mirrors ARActivity.onVsync without the stale-pose check, which depends on wall-clock gaps
+    private void place(long vsyncNanos, int analysisWidth, int analysisHeight, Result result) {
+        if (!smoother.predict(vsyncNanos, display)) return;
+        long start = System.nanoTime();
+        if (!viewTransform.update(analysisWidth, analysisHeight, display.getRotation(), mirrored,
+                viewWidth, viewHeight, CameraViewTransform.ScaleMode.FILL_CENTER)) {
+            return;
+        }
+        viewTransform.mapLandmarks(display, screenPoints);
+        if (display.hasAll(SHOULDERS)) {
+            placement.compute(clothingType, screenPoints, display.hasAll(HIPS), viewHeight, baseWidth, baseHeight);
+            result.addPlacement(placement);
+        }
+        result.metrics.record(PerfMetrics.Stage.PLACE, System.nanoTime() - start);
+    }
+
+    // Usage: FrameReplayer <recording> [viewWidth viewHeight]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: FrameReplayer <recording> [viewWidth viewHeight]");
+            System.exit(2);
+        }
+        File recording = new File(args[0]);
+        int viewWidth = args.length > 2 ? Integer.parseInt(args[1]) : 1080;
+        int viewHeight = args.length > 2 ? Integer.parseInt(args[2]) : 2340;
+        FrameReplayer replayer = new FrameReplayer(RecordedDetector.load(recording), viewWidth, viewHeight);
+        System.out.println(replayer.replay(recording).describe());
+    }
+}
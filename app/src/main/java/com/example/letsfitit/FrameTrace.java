@@ -0,0 +1,169 @@
+package com.example.letsfitit;
+
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hot-path tracing for the AR pipeline. Events take only primitive arguments and are written into a
+// fixed ring buffer, so a disabled or ring-only trace never builds a string. ENABLED comes from
+// BuildConfig and is a compile-time constant: with it false javac drops every traced block.
+// The ring is dumped to logcat when something goes wrong, giving the last few hundred frames of context.
+public final class FrameTrace {
+    private static final String TAG = "FrameTrace";
+
+    public static final boolean ENABLED = BuildConfig.FRAME_TRACE;
+
+    public static final int LEVEL_OFF = 0;
+    // Record into the ring and emit android.os.Trace sections
+    public static final int LEVEL_RING = 1;
+    // Additionally mirror every event to logcat (formats a string per event)
+    public static final int LEVEL_LOG = 2;
+
+    // Event ids; NAMES and ARG_NAMES are indexed by them
+    public static final int FRAME_CONVERTED = 0;
+    public static final int FRAME_SUBMITTED = 1;
+    public static final int POSE_RESULT = 2;
+    public static final int POSE_EMPTY = 3;
+    public static final int STALE_RESULT = 4;
+    public static final int SHOULDERS = 5;
+    public static final int PLACEMENT = 6;
+    public static final int SHOULDERS_MISSING = 7;
+    public static final int NULL_BITMAP = 8;
+    public static final int DETECTOR_NOT_READY = 9;
+
+    private static final String[] NAMES = {
+            "frame converted", "frame submitted", "pose result", "pose empty", "stale result",
+            "shoulders", "placement", "shoulders missing", "null bitmap", "detector not ready"
+    };
+    // Labels for (a, b, c) and then (x, y, z, w); null entries are not printed
+    private static final String[][] ARG_NAMES = {
+            {"width", "height", "rotation", null, null, null, null},
+            {"rotation", "timestamp", null, null, null, null, null},
+            {"landmarks", "rotation", "timestamp", null, null, null, null},
+            {null, null, null, null, null, null, null},
+            {"timestamp", "lastDelivered", null, null, null, null, null},
+            {"rotation", null, null, "leftX", "leftY", "rightX", "rightY"},
+            {"rotation", null, null, "left", "top", "scale", "tilt"},
+            {null, null, null, null, null, null, null},
+            {null, null, null, null, null, null, null},
+            {null, null, null, null, null, null, null}
+    };
+
+    private static final int CAPACITY = 256;
+    private static final long DUMP_INTERVAL_NANOS = 5_000_000_000L;
+
+    private static final long[] times = new long[CAPACITY];
+    private static final int[] ids = new int[CAPACITY];
+    private static final long[] longArgs = new long[CAPACITY * 3];
+    private static final float[] floatArgs = new float[CAPACITY * 4];
+    private static final AtomicInteger cursor = new AtomicInteger();
+
+    private static volatile int level = LEVEL_RING;
+    private static volatile long lastDumpNanos = -DUMP_INTERVAL_NANOS;
+
+    private FrameTrace() {
+    }
+
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    public static void event(int id) {
+        if (ENABLED && level >= LEVEL_RING) {
+            write(id, 0, 0, 0, 0f, 0f, 0f, 0f);
+        }
+    }
+
+    public static void event(int id, long a, long b) {
+        if (ENABLED && level >= LEVEL_RING) {
+            write(id, a, b, 0, 0f, 0f, 0f, 0f);
+        }
+    }
+
+    public static void event(int id, long a, long b, long c) {
+        if (ENABLED && level >= LEVEL_RING) {
+            write(id, a, b, c, 0f, 0f, 0f, 0f);
+        }
+    }
+
+    public static void event(int id, long a, float x, float y, float z, float w) {
+        if (ENABLED && level >= LEVEL_RING) {
+            write(id, a, 0, 0, x, y, z, w);
+        }
+    }
+
+    // Slots are claimed lock-free; a reader racing a writer may see one torn entry, which is fine for diagnostics
+    private static void write(int id, long a, long b, long c, float x, float y, float z, float w) {
+        int slot = cursor.getAndIncrement() & (CAPACITY - 1);
+        times[slot] = System.nanoTime();
+        ids[slot] = id;
+        longArgs[slot * 3] = a;
+        longArgs[slot * 3 + 1] = b;
+        longArgs[slot * 3 + 2] = c;
+        floatArgs[slot * 4] = x;
+        floatArgs[slot * 4 + 1] = y;
+        floatArgs[slot * 4 + 2] = z;
+        floatArgs[slot * 4 + 3] = w;
+        if (level >= LEVEL_LOG) {
+            Log.d(TAG, format(new StringBuilder(96), slot).toString());
+        }
+    }
+
+    // Section names must be constants; nesting must match on the same thread
+    public static void begin(String section) {
+        if (ENABLED && level >= LEVEL_RING) {
+            Trace.beginSection(section);
+        }
+    }
+
+    public static void end() {
+        if (ENABLED && level >= LEVEL_RING) {
+            Trace.endSection();
+        }
+    }
+
+    // Logs the ring oldest-first, at most once every few seconds so a failing frame loop cannot flood logcat.
+    public static void dumpOnError(String reason) {
+        if (!ENABLED || level < LEVEL_RING) return;
+        long now = System.nanoTime();
+        long last = lastDumpNanos;
+        if (now - last < DUMP_INTERVAL_NANOS) return;
+        lastDumpNanos = now;
+        Log.e(TAG, "Trace dump (" + reason + "):\n" + dump());
+    }
+
+    public static String dump() {
+        int end = cursor.get();
+        int count = Math.min(end, CAPACITY);
+        StringBuilder sb = new StringBuilder(count * 64);
+        long newest = count > 0 ? times[(end - 1) & (CAPACITY - 1)] : 0;
+        for (int i = end - count; i < end; i++) {
+            int slot = i & (CAPACITY - 1);
+            // Relative to the newest entry, in ms
+            sb.append(String.format("%9.3f ", (times[slot] - newest) / 1_000_000f));
+            format(sb, slot).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder format(StringBuilder sb, int slot) {
+        int id = ids[slot];
+        if (id < 0 || id >= NAMES.length) {
+            return sb.append("event ").append(id);
+        }
+        sb.append(NAMES[id]);
+        String[] args = ARG_NAMES[id];
+        for (int i = 0; i < 3; i++) {
+            if (args[i] != null) sb.append(' ').append(args[i]).append('=').append(longArgs[slot * 3 + i]);
+        }
+        for (int i = 0; i < 4; i++) {
+            if (args[3 + i] != null) sb.append(' ').append(args[3 + i]).append('=').append(floatArgs[slot * 4 + i]);
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.letsfitit;
+
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// On-disk garment: a small little-endian header followed by the bitmap's raw ARGB_8888 rows exactly as
+// copyPixelsToBuffer lays them out. Both directions go through a mapped file, so writing is one copy out
+// of the bitmap and reading is one copy into a new one, with no PNG encode or decode.
+//
+// Header: magic, version, width, height, rowBytes, flags (bit 0 = premultiplied), bounds (left, top,
+// right, bottom of the pixels above ImagingKernels.GARMENT_ALPHA_THRESHOLD; all zero when there are
+// none), dataOffset, typeLength, anchorCount, then the UTF-8 garment type and anchorCount (x, y) float
+// pairs in bitmap pixels. Pixel rows start at dataOffset, 64-byte aligned.
+public final class GarmentFile {
+    static final int MAGIC = 0x4D47464C; // "LFGM"
+    static final int VERSION = 1;
+
+    private static final int FLAG_PREMULTIPLIED = 1;
+    private static final int FIXED_HEADER_BYTES = 56;
+    private static final int DATA_ALIGNMENT = 64;
+    private static final int MAX_TYPE_BYTES = 256;
+    private static final int MAX_ANCHORS = 64;
+
+    public static final class Garment {
+        public final Bitmap bitmap;
+        public final String type;
+        // left, top, right, bottom (exclusive) of the visible garment inside the bitmap
+        public final int[] bounds;
+        // x, y pairs in bitmap pixels
+        public final float[] anchors;
+
+        Garment(Bitmap bitmap, String type, int[] bounds, float[] anchors) {
+            this.bitmap = bitmap;
+            this.type = type;
+            this.bounds = bounds;
+            this.anchors = anchors;
+        }
+    }
+
+    private GarmentFile() {
+    }
+
+    // anchors may be null, in which case the collar (top centre) and hem (bottom centre) of the
+    // garment's bounds are stored. Writes to a temporary file first so readers never see half a garment.
+    public static void write(File file, Bitmap bitmap, String type, float[] anchors) throws IOException {
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int rowBytes = bitmap.getRowBytes();
+        byte[] typeBytes = (type != null ? type : "unknown").getBytes(StandardCharsets.UTF_8);
+        if (typeBytes.length > MAX_TYPE_BYTES) throw new IOException("Garment type too long");
+        if (anchors != null && (anchors.length % 2 != 0 || anchors.length / 2 > MAX_ANCHORS)) {
+            throw new IOException("Invalid anchors");
+        }
+
+        int anchorSlots = anchors != null ? anchors.length : 4;
+        int headerBytes = FIXED_HEADER_BYTES + typeBytes.length + anchorSlots * 4;
+        int dataOffset = (headerBytes + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+        long pixelBytes = (long) rowBytes * height;
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.setLength(dataOffset + pixelBytes);
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, dataOffset + pixelBytes);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            // Pixels first, so the bounds can be computed from the mapped copy without another pass over the bitmap
+            mapped.position(dataOffset);
+            ByteBuffer pixels = mapped.slice();
+            bitmap.copyPixelsToBuffer(pixels);
+            int[] bounds = alphaBounds(pixels, width, height, rowBytes);
+            if (anchors == null) {
+                float centerX = (bounds[0] + bounds[2]) / 2f;
+                anchors = new float[]{centerX, bounds[1], centerX, bounds[3]};
+            }
+
+            mapped.position(0);
+            mapped.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(rowBytes)
+                    .putInt(bitmap.isPremultiplied() ? FLAG_PREMULTIPLIED : 0)
+                    .putInt(bounds[0]).putInt(bounds[1]).putInt(bounds[2]).putInt(bounds[3])
+                    .putInt(dataOffset).putInt(typeBytes.length).putInt(anchors.length / 2).putInt(0);
+            mapped.put(typeBytes);
+            for (float value : anchors) {
+                mapped.putFloat(value);
+            }
+            mapped.force();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot move " + temp + " to " + file);
+        }
+    }
+
+    // The same bounds GarmentPreparer crops to. Little-endian RGBA words keep alpha in the top byte,
+    // which is what the kernel reads.
+    private static int[] alphaBounds(ByteBuffer rgba, int width, int height, int rowBytes) {
+        rgba.rewind();
+        IntBuffer words = rgba.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        int[] row = new int[width];
+        ImagingKernels.AlphaBounds bounds = new ImagingKernels.AlphaBounds();
+        for (int y = 0; y < height; y++) {
+            words.position(y * (rowBytes / 4));
+            words.get(row);
+            ImagingKernels.includeAlphaRow(row, 0, width, y, ImagingKernels.GARMENT_ALPHA_THRESHOLD, bounds);
+        }
+        return bounds.isEmpty() ? new int[4] : new int[]{bounds.left, bounds.top, bounds.right, bounds.bottom};
+    }
+
+    public static Garment read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < FIXED_HEADER_BYTES) throw new IOException("Truncated garment file " + file);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt() != MAGIC) throw new IOException("Not a garment file: " + file);
+            int version = mapped.getInt();
+            if (version != VERSION) throw new IOException("Unsupported garment file version " + version);
+            int width = mapped.getInt();
+            int height = mapped.getInt();
+            int rowBytes = mapped.getInt();
+            int flags = mapped.getInt();
+            int[] bounds = {mapped.getInt(), mapped.getInt(), mapped.getInt(), mapped.getInt()};
+            int dataOffset = mapped.getInt();
+            int typeLength = mapped.getInt();
+            int anchorCount = mapped.getInt();
+            mapped.getInt();
+
+            if (width <= 0 || height <= 0 || rowBytes < width * 4 || typeLength < 0 || typeLength > MAX_TYPE_BYTES
+                    || anchorCount < 0 || anchorCount > MAX_ANCHORS
+                    || dataOffset < FIXED_HEADER_BYTES + typeLength + anchorCount * 8
+                    || dataOffset + (long) rowBytes * height > size) {
+                throw new IOException("Corrupt garment header in " + file);
+            }
+
+            byte[] typeBytes = new byte[typeLength];
+            mapped.get(typeBytes);
+            float[] anchors = new float[anchorCount * 2];
+            for (int i = 0; i < anchors.length; i++) {
+                anchors[i] = mapped.getFloat();
+            }
+
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            if (bitmap.getRowBytes() != rowBytes) {
+                bitmap.recycle();
+                throw new IOException("Row stride " + rowBytes + " does not match this device's " + bitmap.getRowBytes());
+            }
+            bitmap.setPremultiplied((flags & FLAG_PREMULTIPLIED) != 0);
+            mapped.position(dataOffset);
+            mapped.limit(dataOffset + rowBytes * height);
+            bitmap.copyPixelsFromBuffer(mapped);
+
+            return new Garment(bitmap, new String(typeBytes, StandardCharsets.UTF_8), bounds, anchors);
+        }
+    }
+}
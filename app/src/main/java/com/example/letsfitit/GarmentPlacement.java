@@ -0,0 +1,82 @@
+package com.example.letsfitit;
+
+// Garment placement math: from view-space landmarks to the garment's box and shoulder tilt.
+// Kept free of Android types and reused between frames so it can run per vsync and off-device.
+public class GarmentPlacement {
+    // Garment box before pose scaling, and the largest scale any clothing type is clamped to
+    public static final float BASE_WIDTH = 400f;
+    public static final float BASE_HEIGHT = 500f;
+    public static final float MAX_SCALE = 2.2f;
+
+    public float left;
+    public float top;
+    public float width;
+    public float height;
+    public float scale;
+    // Shoulder tilt, applied around (pivotX, pivotY), the midpoint between the shoulders
+    public float rotationDegrees;
+    public float pivotX;
+    public float pivotY;
+
+    // points holds (x, y) per landmark index in view pixels, as produced by CameraViewTransform.
+    public void compute(String clothingType, float[] points, boolean hasHips, int viewHeight,
+                        float baseWidth, float baseHeight) {
+        float leftShoulderX = points[PoseFrame.LEFT_SHOULDER * 2];
+        float leftShoulderY = points[PoseFrame.LEFT_SHOULDER * 2 + 1];
+        float rightShoulderX = points[PoseFrame.RIGHT_SHOULDER * 2];
+        float rightShoulderY = points[PoseFrame.RIGHT_SHOULDER * 2 + 1];
+
+        float centerX = (leftShoulderX + rightShoulderX) / 2f;
+        float centerY = (leftShoulderY + rightShoulderY) / 2f;
+        float shoulderWidth = Math.abs(rightShoulderX - leftShoulderX);
+
+        float hipCenterY = centerY;
+        if (hasHips) {
+            hipCenterY = (points[PoseFrame.LEFT_HIP * 2 + 1] + points[PoseFrame.RIGHT_HIP * 2 + 1]) / 2f;
+        }
+
+        float anchorY;
+        float anchorFraction;
+
+        switch (clothingType != null ? clothingType : "unknown") {
+            case "pants":
+            case "shorts":
+                scale = clamp(shoulderWidth * 1.8f / baseWidth, 0.7f, 2.0f);
+                anchorY = hipCenterY;
+                anchorFraction = 1f / 3f;
+                break;
+            case "dress":
+                scale = clamp(shoulderWidth * 2.0f / baseWidth, 0.8f, MAX_SCALE);
+                anchorY = centerY;
+                anchorFraction = 1f / 6f;
+                break;
+            case "shirt":
+            case "jacket":
+            default:
+                scale = clamp(shoulderWidth * 2.2f / baseWidth, 0.6f, 2.0f);
+                anchorY = centerY;
+                anchorFraction = 1f / 4f;
+                break;
+        }
+
+        width = baseWidth * scale;
+        height = baseHeight * scale;
+        left = centerX - width / 2f;
+        top = Math.max(0f, Math.min(anchorY - height * anchorFraction, viewHeight - height));
+
+        // Measure the tilt left-to-right on screen so mirroring does not flip it by 180 degrees
+        float dx = rightShoulderX - leftShoulderX;
+        float dy = rightShoulderY - leftShoulderY;
+        if (dx < 0) {
+            dx = -dx;
+            dy = -dy;
+        }
+        rotationDegrees = (float) Math.toDegrees(Math.atan2(dy, dx));
+        pivotX = centerX;
+        pivotY = centerY;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(value, max));
+    }
+}
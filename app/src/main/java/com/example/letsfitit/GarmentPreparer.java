@@ -0,0 +1,91 @@
+package com.example.letsfitit;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+// Turns a segmentation result into the bitmap the AR overlay draws. Segmented photos are full
+// resolution and mostly transparent, while the overlay never draws a garment larger than
+// GarmentPlacement's base box at MAX_SCALE. This class crops the photo to the garment's alpha bounds and
+// downscales it to fit that box, so every overlay draw reads a fraction of the original memory.
+public final class GarmentPreparer {
+    private static final String TAG = "GarmentPreparer";
+    public static final int MAX_WIDTH = Math.round(GarmentPlacement.BASE_WIDTH * GarmentPlacement.MAX_SCALE);
+    public static final int MAX_HEIGHT = Math.round(GarmentPlacement.BASE_HEIGHT * GarmentPlacement.MAX_SCALE);
+
+    // Canvas draws through premultiplied alpha. Halving and filtering therefore never bleed the colour of
+    // transparent background pixels into the garment's edges.
+    private static final Paint FILTER_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private GarmentPreparer() {
+    }
+
+    public static Bitmap prepareForOverlay(Bitmap segmented, boolean hardware) {
+        return prepare(segmented, MAX_WIDTH, MAX_HEIGHT, hardware);
+    }
+
+    // Returns a new premultiplied bitmap holding only the visible garment, no larger than
+    // maxWidth x maxHeight. With hardware set it lives in GPU memory and cannot be read back with getPixels.
+    public static Bitmap prepare(Bitmap segmented, int maxWidth, int maxHeight, boolean hardware) {
+        long start = System.nanoTime();
+        Bitmap source = segmented.getConfig() == Bitmap.Config.HARDWARE
+                ? segmented.copy(Bitmap.Config.ARGB_8888, false) : segmented;
+
+        Rect crop = alphaBounds(source);
+        if (crop.isEmpty()) {
+            crop.set(0, 0, source.getWidth(), source.getHeight());
+        }
+        float scale = Math.min(1f, Math.min((float) maxWidth / crop.width(), (float) maxHeight / crop.height()));
+        int width = Math.max(1, Math.round(crop.width() * scale));
+        int height = Math.max(1, Math.round(crop.height() * scale));
+
+        // A bilinear filter samples only 2x2 texels, so a large reduction done in one step would skip
+        // most of the source. Halve first until the remaining step is 2x or less.
+        Bitmap current = source;
+        Rect region = crop;
+        while (region.width() > width * 2 && region.height() > height * 2) {
+            Bitmap half = scaleRegion(current, region, region.width() / 2, region.height() / 2);
+            if (current != source) current.recycle();
+            current = half;
+            region = new Rect(0, 0, half.getWidth(), half.getHeight());
+        }
+        Bitmap prepared = scaleRegion(current, region, width, height);
+        if (current != source) current.recycle();
+        if (source != segmented) source.recycle();
+
+        if (hardware) {
+            Bitmap uploaded = prepared.copy(Bitmap.Config.HARDWARE, false);
+            if (uploaded != null) {
+                prepared.recycle();
+                prepared = uploaded;
+            }
+        }
+
+        Log.d(TAG, "Prepared " + segmented.getWidth() + "x" + segmented.getHeight() + " -> crop " + crop.toShortString()
+                + " -> " + width + "x" + height + (hardware ? " hardware" : "") + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return prepared;
+    }
+
+    private static Bitmap scaleRegion(Bitmap source, Rect region, int width, int height) {
+        Bitmap out = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(out).drawBitmap(source, region, new Rect(0, 0, width, height), FILTER_PAINT);
+        return out;
+    }
+
+    // Crop box from ImagingKernels.includeAlphaRow, the same bounds GarmentFile records, fed one row at a
+    // time so no full-size copy is needed
+    static Rect alphaBounds(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] row = new int[width];
+        ImagingKernels.AlphaBounds bounds = new ImagingKernels.AlphaBounds();
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            ImagingKernels.includeAlphaRow(row, 0, width, y, ImagingKernels.GARMENT_ALPHA_THRESHOLD, bounds);
+        }
+        return bounds.isEmpty() ? new Rect() : new Rect(bounds.left, bounds.top, bounds.right, bounds.bottom);
+    }
+}
@@ -1,44 +1,86 @@
 package com.example.letsfitit;
 
 import android.graphics.Bitmap;
-import android.graphics.ImageFormat;
 import android.media.Image;
 import androidx.camera.core.ImageProxy;
-import java.nio.ByteBuffer;
-import android.graphics.YuvImage;
-import android.graphics.BitmapFactory;
-import java.io.ByteArrayOutputStream;
-import android.graphics.Rect;
 import android.graphics.Matrix;
 
 
 
 public class ImageUtils {
-    @androidx.annotation.OptIn(markerClass = androidx.camera.core.ExperimentalGetImage.class)
     public static Bitmap imageToBitmap(ImageProxy imageProxy) {
+        return imageToBitmap(imageProxy, new YuvToRgbConverter(), new FrameBufferPool());
+    }
+
+    // Converts the YUV_420_888 frame directly into a pooled ARGB bitmap.
+    // The caller owns the returned bitmap and hands it back with pool.releaseBitmap().
+    @androidx.annotation.OptIn(markerClass = androidx.camera.core.ExperimentalGetImage.class)
+    public static Bitmap imageToBitmap(ImageProxy imageProxy, YuvToRgbConverter converter, FrameBufferPool pool) {
         Image image = imageProxy.getImage();
         if (image == null) return null;
 
+        int width = imageProxy.getWidth();
+        int height = imageProxy.getHeight();
+
+        Image.Plane[] planes = image.getPlanes();
+        int[] argb = pool.acquireIntBuffer(width * height);
+        try {
+            converter.convert(
+                    planes[0].getBuffer(), planes[0].getRowStride(),
+                    planes[1].getBuffer(), planes[2].getBuffer(),
+                    planes[1].getRowStride(), planes[1].getPixelStride(),
+                    width, height, argb);
+
+            Bitmap bitmap = pool.acquireBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmap.setPixels(argb, 0, width, 0, 0, width, height);
+            return bitmap;
+        } finally {
+            pool.releaseIntBuffer(argb);
+        }
+    }
+
+    // Converts and downsamples only the crop described by crop into a pooled outWidth x outHeight bitmap.
+    @androidx.annotation.OptIn(markerClass = androidx.camera.core.ExperimentalGetImage.class)
+    public static Bitmap imageRegionToBitmap(ImageProxy imageProxy, YuvToRgbConverter converter,
+                                             FrameBufferPool pool, RoiTracker.Crop crop) {
+        Image image = imageProxy.getImage();
+        if (image == null) return null;
 
-        ByteBuffer yBuffer = image.getPlanes()[0].getBuffer();
-        ByteBuffer uBuffer = image.getPlanes()[1].getBuffer();
-        ByteBuffer vBuffer = image.getPlanes()[2].getBuffer();
+        Image.Plane[] planes = image.getPlanes();
+        int[] argb = pool.acquireIntBuffer(crop.outWidth * crop.outHeight);
+        try {
+            converter.convertRegion(
+                    planes[0].getBuffer(), planes[0].getRowStride(),
+                    planes[1].getBuffer(), planes[2].getBuffer(),
+                    planes[1].getRowStride(), planes[1].getPixelStride(),
+                    crop.left, crop.top, crop.outWidth, crop.outHeight, crop.step, argb);
 
-        int ySize = yBuffer.remaining();
-        int uSize = uBuffer.remaining();
-        int vSize = vBuffer.remaining();
+            Bitmap bitmap = pool.acquireBitmap(crop.outWidth, crop.outHeight, Bitmap.Config.ARGB_8888);
+            bitmap.setPixels(argb, 0, crop.outWidth, 0, 0, crop.outWidth, crop.outHeight);
+            return bitmap;
+        } finally {
+            pool.releaseIntBuffer(argb);
+        }
+    }
 
-        byte[] nv21 = new byte[ySize + uSize + vSize];
-        yBuffer.get(nv21, 0, ySize);
-        vBuffer.get(nv21, ySize, vSize);
-        uBuffer.get(nv21, ySize + vSize, uSize);
+    // Reads bitmap's pixels (unpremultiplied ARGB) into reuse, or a new buffer when reuse is null
+    public static PixelBuffer toPixelBuffer(Bitmap bitmap, PixelBuffer reuse) {
+        if (bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            bitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        PixelBuffer buffer = reuse != null ? reuse.reshape(width, height) : new PixelBuffer(width, height);
+        bitmap.getPixels(buffer.getData(), 0, buffer.getStride(), 0, 0, width, height);
+        return buffer;
+    }
 
-        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, imageProxy.getWidth(), imageProxy.getHeight(), null);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        yuvImage.compressToJpeg(new android.graphics.Rect(0, 0, imageProxy.getWidth(), imageProxy.getHeight()), 80, out);
-        byte[] imageBytes = out.toByteArray();
-        return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+    public static Bitmap toBitmap(PixelBuffer buffer) {
+        Bitmap bitmap = Bitmap.createBitmap(buffer.getWidth(), buffer.getHeight(), Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(buffer.getData(), 0, buffer.getStride(), 0, 0, buffer.getWidth(), buffer.getHeight());
+        return bitmap;
     }
+
     public static Bitmap rotateBitmap(Bitmap source, int degrees) {
         if (degrees == 0) return source;
         Matrix matrix = new Matrix();
@@ -0,0 +1,381 @@
+package com.example.letsfitit;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+// Android-free pixel kernels behind Model and ImageUtils. Everything works on PixelBuffer or flat
+// primitive arrays, walks memory row by row, and takes row ranges where a caller may want to split
+// work across threads. Segmentation logits are planar: value(class, x, y) = logits[class * w * h + y * w + x].
+public final class ImagingKernels {
+    private static final int WEIGHT_BITS = 8;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    private ImagingKernels() {
+    }
+
+    // Bilinear resize with pixel-centre alignment, the sampling Bitmap.createScaledBitmap(..., true) uses.
+    public static void resizeBilinear(PixelBuffer src, PixelBuffer dst) {
+        resizeBilinearRows(src, dst, 0, dst.getHeight());
+    }
+
+    // Writes destination rows [rowStart, rowEnd) only.
+    public static void resizeBilinearRows(PixelBuffer src, PixelBuffer dst, int rowStart, int rowEnd) {
+        int srcWidth = src.getWidth(), srcHeight = src.getHeight(), srcStride = src.getStride();
+        int dstWidth = dst.getWidth(), dstStride = dst.getStride();
+        int[] in = src.getData();
+        int[] out = dst.getData();
+
+        // Column sample positions are the same for every row
+        int[] x0 = new int[dstWidth];
+        int[] x1 = new int[dstWidth];
+        int[] fx = new int[dstWidth];
+        float scaleX = (float) srcWidth / dstWidth;
+        for (int x = 0; x < dstWidth; x++) {
+            float sx = Math.max(0f, (x + 0.5f) * scaleX - 0.5f);
+            x0[x] = Math.min((int) sx, srcWidth - 1);
+            x1[x] = Math.min(x0[x] + 1, srcWidth - 1);
+            fx[x] = (int) ((sx - x0[x]) * WEIGHT_ONE);
+        }
+
+        float scaleY = (float) src.getHeight() / dst.getHeight();
+        for (int y = rowStart; y < rowEnd; y++) {
+            float sy = Math.max(0f, (y + 0.5f) * scaleY - 0.5f);
+            int y0 = Math.min((int) sy, srcHeight - 1);
+            int y1 = Math.min(y0 + 1, srcHeight - 1);
+            int fy = (int) ((sy - y0) * WEIGHT_ONE);
+            int row0 = y0 * srcStride;
+            int row1 = y1 * srcStride;
+            int outRow = y * dstStride;
+
+            for (int x = 0; x < dstWidth; x++) {
+                int wx = fx[x];
+                out[outRow + x] = lerp2(in[row0 + x0[x]], in[row0 + x1[x]], in[row1 + x0[x]], in[row1 + x1[x]], wx, fy);
+            }
+        }
+    }
+
+    // Per-channel bilinear blend with 8-bit weights
+    private static int lerp2(int p00, int p01, int p10, int p11, int wx, int wy) {
+        int result = 0;
+        for (int shift = 0; shift <= 24; shift += 8) {
+            int c00 = (p00 >>> shift) & 0xFF, c01 = (p01 >>> shift) & 0xFF;
+            int c10 = (p10 >>> shift) & 0xFF, c11 = (p11 >>> shift) & 0xFF;
+            int top = (c00 << WEIGHT_BITS) + (c01 - c00) * wx;
+            int bottom = (c10 << WEIGHT_BITS) + (c11 - c10) * wx;
+            int value = ((top << WEIGHT_BITS) + (bottom - top) * wy + (1 << (2 * WEIGHT_BITS - 1))) >> (2 * WEIGHT_BITS);
+            result |= value << shift;
+        }
+        return result;
+    }
+
+    // HWC float tensor: out[(y * w + x) * 3 + c] = (channel / 255 - mean[c]) / std[c], c in R, G, B order.
+    public static void normalize(PixelBuffer src, float[] mean, float[] std, float[] out) {
+        normalizeRows(src, mean, std, out, 0, src.getHeight());
+    }
+
+    public static void normalizeRows(PixelBuffer src, float[] mean, float[] std, float[] out, int rowStart, int rowEnd) {
+        int width = src.getWidth(), stride = src.getStride();
+        int[] in = src.getData();
+        float scaleR = 1f / (255f * std[0]), scaleG = 1f / (255f * std[1]), scaleB = 1f / (255f * std[2]);
+        float biasR = -mean[0] / std[0], biasG = -mean[1] / std[1], biasB = -mean[2] / std[2];
+        for (int y = rowStart; y < rowEnd; y++) {
+            int inRow = y * stride;
+            int o = y * width * 3;
+            for (int x = 0; x < width; x++) {
+                int pixel = in[inRow + x];
+                out[o++] = ((pixel >> 16) & 0xFF) * scaleR + biasR;
+                out[o++] = ((pixel >> 8) & 0xFF) * scaleG + biasG;
+                out[o++] = (pixel & 0xFF) * scaleB + biasB;
+            }
+        }
+    }
+
+    // Alpha above this counts as part of a garment; fainter pixels are invisible in the overlay
+    public static final int GARMENT_ALPHA_THRESHOLD = 8;
+
+    // Bounding box of the pixels whose alpha is above a threshold, grown one row at a time by
+    // includeAlphaRow so callers never need the whole image in one array. right and bottom are exclusive.
+    public static final class AlphaBounds {
+        public int left;
+        public int top;
+        public int right;
+        public int bottom;
+
+        public AlphaBounds() {
+            reset();
+        }
+
+        public void reset() {
+            left = Integer.MAX_VALUE;
+            top = Integer.MAX_VALUE;
+            right = 0;
+            bottom = 0;
+        }
+
+        public boolean isEmpty() {
+            return right <= left || bottom <= top;
+        }
+
+        public int width() {
+            return isEmpty() ? 0 : right - left;
+        }
+
+        public int height() {
+            return isEmpty() ? 0 : bottom - top;
+        }
+    }
+
+    // Adds row y (width pixels from row[offset]) to bounds. Alpha is read from the top byte, which holds
+    // for ARGB ints from Bitmap.getPixels and for RGBA bytes read as little-endian ints alike. Columns
+    // already inside the box are only scanned until the row's first hit from the left.
+    public static void includeAlphaRow(int[] row, int offset, int width, int y, int threshold, AlphaBounds bounds) {
+        int first = 0;
+        while (first < width && (row[offset + first] >>> 24) <= threshold) first++;
+        if (first == width) return;
+        int last = width - 1;
+        int stop = Math.max(first, bounds.right - 1);
+        while (last > stop && (row[offset + last] >>> 24) <= threshold) last--;
+
+        if (first < bounds.left) bounds.left = first;
+        if (last + 1 > bounds.right) bounds.right = last + 1;
+        if (y < bounds.top) bounds.top = y;
+        if (y + 1 > bounds.bottom) bounds.bottom = y + 1;
+    }
+
+    // 64-bit content hash of ARGB pixels. Chainable, so an image can be hashed a row at a time:
+    // hash = hashPixels(hash, row, 0, width)
+    public static long hashPixels(long hash, int[] pixels, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = (hash ^ pixels[i]) * 0x9E3779B97F4A7C15L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    // 256 entries mapping an 8-bit channel value to (value / 255 - mean) / std
+    public static float[] normalizationLut(float mean, float std) {
+        float[] lut = new float[256];
+        for (int value = 0; value < 256; value++) {
+            lut[value] = (value / 255f - mean) / std;
+        }
+        return lut;
+    }
+
+    // Same HWC layout as normalize(), looked up per channel and written row by row into out (typically a
+    // view of a direct ByteBuffer). Uses its own duplicate of out, so disjoint row ranges can run in parallel.
+    public static void normalizeRows(PixelBuffer src, float[] lutR, float[] lutG, float[] lutB,
+                                     FloatBuffer out, int rowStart, int rowEnd) {
+        int width = src.getWidth(), stride = src.getStride();
+        int[] in = src.getData();
+        float[] row = new float[width * 3];
+        FloatBuffer target = out.duplicate();
+        target.position(rowStart * width * 3);
+        for (int y = rowStart; y < rowEnd; y++) {
+            int inRow = y * stride;
+            int o = 0;
+            for (int x = 0; x < width; x++) {
+                int pixel = in[inRow + x];
+                row[o++] = lutR[(pixel >> 16) & 0xFF];
+                row[o++] = lutG[(pixel >> 8) & 0xFF];
+                row[o++] = lutB[pixel & 0xFF];
+            }
+            target.put(row);
+        }
+    }
+
+    // Everything Model wants from the segmentation output, filled by one analyze() pass
+    public static final class LogitSummary {
+        public final int classes;
+        public final int width;
+        public final int height;
+        public final byte[] classMap;
+        public final int[] classCounts;
+        // Per class, cells whose score is above the analyze() threshold
+        public final int[] aboveThreshold;
+        public float min;
+        public float max;
+        // Bit c set when class c wins at least one cell
+        public long presentClasses;
+        public int clothingCells;
+        private final float[] best;
+
+        public LogitSummary(int classes, int width, int height) {
+            if (classes > 64) throw new IllegalArgumentException("At most 64 classes, got " + classes);
+            this.classes = classes;
+            this.width = width;
+            this.height = height;
+            classMap = new byte[width * height];
+            classCounts = new int[classes];
+            aboveThreshold = new int[classes];
+            best = new float[width * height];
+        }
+    }
+
+    // One pass over planar logits producing the class map, class histogram, global min/max and
+    // per-class counts above threshold. The class map keeps the original per-pixel rule: ties keep the
+    // lower class and cells with no positive score stay class 0 (background). Planes are read in memory order; the
+    // running best score per cell lives in the summary. clothingCells counts cells whose class bit is in classBits.
+    public static void analyze(float[] logits, float threshold, long classBits, LogitSummary out) {
+        int plane = out.width * out.height;
+        byte[] classMap = out.classMap;
+        float[] best = out.best;
+        Arrays.fill(classMap, (byte) 0);
+        Arrays.fill(best, 0f);
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+
+        for (int cls = 0; cls < out.classes; cls++) {
+            int base = cls * plane;
+            int above = 0;
+            for (int i = 0; i < plane; i++) {
+                float value = logits[base + i];
+                if (value < min) min = value;
+                if (value > max) max = value;
+                if (value > threshold) above++;
+                if (value > best[i]) {
+                    best[i] = value;
+                    classMap[i] = (byte) cls;
+                }
+            }
+            out.aboveThreshold[cls] = above;
+        }
+
+        histogram(classMap, plane, out.classCounts);
+        long present = 0;
+        int clothing = 0;
+        for (int cls = 0; cls < out.classes; cls++) {
+            if (out.classCounts[cls] == 0) continue;
+            present |= 1L << cls;
+            if (((classBits >>> cls) & 1L) != 0) clothing += out.classCounts[cls];
+        }
+        out.min = min;
+        out.max = max;
+        out.presentClasses = present;
+        out.clothingCells = clothing;
+    }
+
+    public static void histogram(byte[] classMap, int count, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < count; i++) {
+            counts[classMap[i] & 0xFF]++;
+        }
+    }
+
+    // Hard alpha per cell: 255 where the winning class is in classBits, 0 elsewhere
+    public static void classAlpha(byte[] classMap, int count, long classBits, byte[] alpha) {
+        for (int i = 0; i < count; i++) {
+            alpha[i] = ((classBits >>> classMap[i]) & 1L) != 0 ? (byte) 255 : 0;
+        }
+    }
+
+    // Soft alpha per cell: softmax probability mass of the classes in classBits, scaled to 0..255
+    public static void probabilityAlpha(float[] logits, int classes, int width, int height, long classBits, byte[] alpha) {
+        int plane = width * height;
+        for (int i = 0; i < plane; i++) {
+            float peak = logits[i];
+            for (int cls = 1, offset = i + plane; cls < classes; cls++, offset += plane) {
+                peak = Math.max(peak, logits[offset]);
+            }
+            float total = 0f;
+            float selected = 0f;
+            for (int cls = 0, offset = i; cls < classes; cls++, offset += plane) {
+                float e = (float) Math.exp(logits[offset] - peak);
+                total += e;
+                if (((classBits >>> cls) & 1L) != 0) selected += e;
+            }
+            alpha[i] = (byte) Math.round(selected / total * 255f);
+        }
+    }
+
+    // Separable Gaussian blur of an 8-bit plane in place, edges clamped. radius follows BlurMaskFilter's
+    // convention (sigma = 0.57735 * radius + 0.5).
+    public static void blurPlane(byte[] plane, int width, int height, float radius) {
+        if (radius <= 0f) return;
+        int[] kernel = gaussianKernel(0.57735f * radius + 0.5f);
+        int half = kernel.length / 2;
+        byte[] horizontal = new byte[width * height];
+
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int k = -half; k <= half; k++) {
+                    int sx = x + k < 0 ? 0 : (x + k >= width ? width - 1 : x + k);
+                    sum += (plane[row + sx] & 0xFF) * kernel[k + half];
+                }
+                horizontal[row + x] = (byte) ((sum + (1 << 15)) >> 16);
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int k = -half; k <= half; k++) {
+                    int sy = y + k < 0 ? 0 : (y + k >= height ? height - 1 : y + k);
+                    sum += (horizontal[sy * width + x] & 0xFF) * kernel[k + half];
+                }
+                plane[y * width + x] = (byte) ((sum + (1 << 15)) >> 16);
+            }
+        }
+    }
+
+    // Weights in 16.16 fixed point summing to exactly 1 << 16
+    static int[] gaussianKernel(float sigma) {
+        int half = Math.max(1, (int) Math.ceil(3f * sigma));
+        float[] weights = new float[2 * half + 1];
+        float total = 0f;
+        for (int i = -half; i <= half; i++) {
+            weights[i + half] = (float) Math.exp(-(i * i) / (2f * sigma * sigma));
+            total += weights[i + half];
+        }
+        int[] kernel = new int[weights.length];
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            kernel[i] = Math.round(weights[i] / total * 65536f);
+            sum += kernel[i];
+        }
+        kernel[half] += 65536 - sum;
+        return kernel;
+    }
+
+    // DST_IN against a low-resolution alpha plane: each pixel's alpha is multiplied by alpha bilinearly
+    // upsampled (pixel-centre aligned) to the image size, in one pass. Colours are unpremultiplied and left as they are.
+    public static void applyAlphaUpsampled(byte[] alpha, int alphaWidth, int alphaHeight, PixelBuffer image) {
+        int width = image.getWidth(), height = image.getHeight(), stride = image.getStride();
+        int[] pixels = image.getData();
+
+        int[] x0 = new int[width];
+        int[] x1 = new int[width];
+        int[] fx = new int[width];
+        float scaleX = (float) alphaWidth / width;
+        for (int x = 0; x < width; x++) {
+            float sx = Math.max(0f, (x + 0.5f) * scaleX - 0.5f);
+            x0[x] = Math.min((int) sx, alphaWidth - 1);
+            x1[x] = Math.min(x0[x] + 1, alphaWidth - 1);
+            fx[x] = (int) ((sx - x0[x]) * WEIGHT_ONE);
+        }
+
+        float scaleY = (float) alphaHeight / height;
+        for (int y = 0; y < height; y++) {
+            float sy = Math.max(0f, (y + 0.5f) * scaleY - 0.5f);
+            int y0 = Math.min((int) sy, alphaHeight - 1);
+            int y1 = Math.min(y0 + 1, alphaHeight - 1);
+            int fy = (int) ((sy - y0) * WEIGHT_ONE);
+            int row0 = y0 * alphaWidth;
+            int row1 = y1 * alphaWidth;
+            int row = y * stride;
+
+            for (int x = 0; x < width; x++) {
+                int a00 = alpha[row0 + x0[x]] & 0xFF, a01 = alpha[row0 + x1[x]] & 0xFF;
+                int a10 = alpha[row1 + x0[x]] & 0xFF, a11 = alpha[row1 + x1[x]] & 0xFF;
+                int top = (a00 << WEIGHT_BITS) + (a01 - a00) * fx[x];
+                int bottom = (a10 << WEIGHT_BITS) + (a11 - a10) * fx[x];
+                int mask = ((top << WEIGHT_BITS) + (bottom - top) * fy + (1 << (2 * WEIGHT_BITS - 1))) >> (2 * WEIGHT_BITS);
+
+                int pixel = pixels[row + x];
+                int a = ((pixel >>> 24) * mask + 127) / 255;
+                pixels[row + x] = (a << 24) | (pixel & 0x00FFFFFF);
+            }
+        }
+    }
+}
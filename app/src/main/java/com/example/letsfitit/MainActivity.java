@@ -37,6 +37,9 @@ public class MainActivity extends AppCompatActivity {
 
         auth = FirebaseAuth.getInstance();
 
+        // Signed in from here on: load and warm up the models before the user reaches Try or AR
+        ModelRegistry.get(this).preload();
+
         // Setup toolbar
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -2,6 +2,7 @@ package com.example.letsfitit;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.google.mediapipe.framework.image.BitmapImageBuilder;
@@ -14,25 +15,70 @@ import com.google.mediapipe.tasks.vision.poselandmarker.PoseLandmarker.PoseLandm
 import com.google.mediapipe.tasks.components.containers.NormalizedLandmark;
 import java.util.List;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class MediaPipePoseDetector {
     private static final String TAG = "MediaPipePoseDetector";
     private static final String POSE_LANDMARKER_TASK = "pose_landmarker_full.task";
 
+    // Frames kept in flight for LIVE_STREAM rotation lookup; MediaPipe never queues more than a few
+    private static final int PENDING_FRAMES = 8;
+
+    // Side of the blank frame used by warmUp()
+    private static final int WARM_UP_SIZE = 256;
+
     private PoseLandmarker poseLandmarker;
-    private PoseDetectionListener listener;
-    private int currentRotation = 0;
+    // Both can be swapped while the detector lives on in ModelRegistry between activities
+    private volatile PoseDetectionListener listener;
+    private volatile FrameBufferPool framePool;
+    private final RunningMode runningMode;
 
+    private final long[] pendingTimestamps = new long[PENDING_FRAMES];
+    private final int[] pendingRotations = new int[PENDING_FRAMES];
+    private final long[] pendingStartNanos = new long[PENDING_FRAMES];
+    private final long[] pendingSubmitNanos = new long[PENDING_FRAMES];
+    // offsetX, offsetY, scaleX, scaleY per pending frame, mapping crop coordinates to the full frame
+    private final float[] pendingCrops = new float[PENDING_FRAMES * 4];
+    private int pendingIndex = 0;
+    private long lastSubmittedTimestamp = -1;
+    private volatile long lastDeliveredTimestamp = -1;
+    private volatile long staleResults = 0;
+    private volatile FrameRateGovernor governor;
+    private volatile PerfMetrics metrics;
+    private final PoseFrame.Pool poseFramePool = new PoseFrame.Pool(POSE_FRAME_POOL_SIZE);
+
+    private static final long REQUIRED_LANDMARKS =
+            PoseFrame.maskOf(PoseFrame.LEFT_SHOULDER, PoseFrame.RIGHT_SHOULDER);
+    private static final int POSE_FRAME_POOL_SIZE = 4;
+
+    // Exactly one of onPoseDetected / onPoseUpdate is called per result. The listener owns the
+    // frame from then on and must call frame.release() when it is done with it.
     public interface PoseDetectionListener {
-        void onPoseDetected(Map<Integer, float[]> landmarks, int rotation);
-        void onPoseUpdate(Map<Integer, float[]> landmarks, int rotation);
+        // Shoulders were found, the frame can drive garment placement
+        void onPoseDetected(PoseFrame frame);
+        // Landmarks without both shoulders, only useful for the skeleton overlay
+        void onPoseUpdate(PoseFrame frame);
+        // The frame was processed but contained no pose
+        void onPoseLost();
         void onPoseError(String error);
     }
 
     public MediaPipePoseDetector(Context context, PoseDetectionListener listener) {
+        this(context, listener, null);
+    }
+
+    public MediaPipePoseDetector(Context context, PoseDetectionListener listener, FrameBufferPool framePool) {
+        this(context, listener, framePool, RunningMode.LIVE_STREAM);
+    }
+
+    // IMAGE mode runs detect() synchronously and is meant for still pictures (e.g. the photo picked in TryActivity).
+    // LIVE_STREAM mode runs detectAsync() and delivers results on MediaPipe's callback thread.
+    public MediaPipePoseDetector(Context context, PoseDetectionListener listener, FrameBufferPool framePool,
+                                 RunningMode runningMode) {
+        if (runningMode == RunningMode.VIDEO) {
+            throw new IllegalArgumentException("VIDEO mode is not supported, use IMAGE or LIVE_STREAM");
+        }
         this.listener = listener;
+        this.framePool = framePool;
+        this.runningMode = runningMode;
         initializePoseDetector(context);
     }
 
@@ -43,93 +89,312 @@ public class MediaPipePoseDetector {
                     .build();
 
 
-            PoseLandmarkerOptions options = PoseLandmarkerOptions.builder()
+            PoseLandmarkerOptions.Builder builder = PoseLandmarkerOptions.builder()
                     .setBaseOptions(baseOptions)
-                    .setRunningMode(RunningMode.IMAGE)
+                    .setRunningMode(runningMode)
                     .setNumPoses(1)
                     .setMinPoseDetectionConfidence(0.5f)
                     .setMinPosePresenceConfidence(0.5f)
-                    .setMinTrackingConfidence(0.5f)
-                    .build();
+                    .setMinTrackingConfidence(0.5f);
+
+            if (runningMode == RunningMode.LIVE_STREAM) {
+                builder.setResultListener((result, input) -> onLiveStreamResult(result));
+                builder.setErrorListener(e -> {
+                    String errorMessage = "Live stream error: " + e.getMessage();
+                    Log.e(TAG, errorMessage, e);
+                    FrameTrace.dumpOnError("live stream error");
+                    notifyError(errorMessage);
+                });
+            }
 
-            poseLandmarker = PoseLandmarker.createFromOptions(context, options);
-            Log.d(TAG, "MediaPipe PoseLandmarker initialized successfully with IMAGE mode");
+            poseLandmarker = PoseLandmarker.createFromOptions(context, builder.build());
+            Log.d(TAG, "MediaPipe PoseLandmarker initialized successfully with " + runningMode + " mode");
 
         } catch (Exception e) {
             String errorMessage = "Failed to initialize MediaPipe Pose: " + e.getMessage();
             Log.e(TAG, errorMessage, e);
-            if (listener != null) {
-                listener.onPoseError(errorMessage);
+            notifyError(errorMessage);
+        }
+    }
+
+    public boolean isReady() {
+        return poseLandmarker != null;
+    }
+
+    public void setListener(PoseDetectionListener listener) {
+        this.listener = listener;
+    }
+
+    // Attaches one user's listener, pool, governor and metrics together
+    public synchronized void bind(PoseDetectionListener listener, FrameBufferPool framePool,
+                                  FrameRateGovernor governor, PerfMetrics metrics) {
+        this.framePool = framePool;
+        this.governor = governor;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    // Detaches what bind() attached for owner. The detector is shared, so when another activity has
+    // bound itself in the meantime its bindings are left alone.
+    public synchronized void unbind(PoseDetectionListener owner) {
+        if (listener != owner) return;
+        listener = null;
+        framePool = null;
+        governor = null;
+        metrics = null;
+    }
+
+    // Bitmaps passed to processFrame go back to this pool; null drops them
+    public void setFramePool(FrameBufferPool framePool) {
+        this.framePool = framePool;
+    }
+
+    // Runs one detection on a blank frame so graph start-up and delegate initialization happen here
+    // instead of on the first camera frame. In LIVE_STREAM mode the (empty) result reaches whichever
+    // listener is set by then.
+    public void warmUp() {
+        if (poseLandmarker == null) return;
+        Bitmap blank = Bitmap.createBitmap(WARM_UP_SIZE, WARM_UP_SIZE, Bitmap.Config.ARGB_8888);
+        try {
+            MPImage mpImage = new BitmapImageBuilder(blank).build();
+            if (runningMode == RunningMode.LIVE_STREAM) {
+                poseLandmarker.detectAsync(mpImage, nextTimestamp());
+            } else {
+                poseLandmarker.detect(mpImage);
             }
+        } catch (Exception e) {
+            Log.w(TAG, "Warm-up detection failed: " + e.getMessage());
+        } finally {
+            blank.recycle();
         }
     }
 
+    // Latency from frame acceptance to result delivery is reported to the governor, if one is set
+    public void setFrameRateGovernor(FrameRateGovernor governor) {
+        this.governor = governor;
+    }
+
+    // Inference latency and stale-result drops are recorded here, if set
+    public void setPerfMetrics(PerfMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public void processFrame(Bitmap bitmap, int rotation) {
-        if (poseLandmarker == null) {
-            Log.w(TAG, "Pose detector not initialized");
+        processFrame(bitmap, rotation, FrameRateGovernor.now());
+    }
+
+    public void processFrame(Bitmap bitmap, int rotation, long frameStartNanos) {
+        processFrame(bitmap, rotation, frameStartNanos, 0f, 0f, 1f, 1f);
+    }
+
+    // Takes ownership of bitmap: when a pool was supplied it is returned there after detection.
+    // frameStartNanos is the monotonic time the frame was accepted, before YUV conversion.
+    // When bitmap is a crop of the analysis frame, landmarks are mapped back to full-frame
+    // normalized coordinates as offset + value * scale before they reach the listener.
+    public void processFrame(Bitmap bitmap, int rotation, long frameStartNanos,
+                             float offsetX, float offsetY, float scaleX, float scaleY) {
+        if (bitmap == null) {
+            FrameTrace.event(FrameTrace.NULL_BITMAP);
             return;
         }
 
-        if (bitmap == null) {
-            Log.w(TAG, "Bitmap is null");
+        if (poseLandmarker == null) {
+            FrameTrace.event(FrameTrace.DETECTOR_NOT_READY);
+            releaseFrame(bitmap);
             return;
         }
 
         try {
             MPImage mpImage = new BitmapImageBuilder(bitmap).build();
 
+            if (runningMode == RunningMode.LIVE_STREAM) {
+                // detectAsync copies the pixels into its input packet before returning,
+                // so the bitmap can go straight back to the pool below
+                long timestamp = nextTimestamp();
+                rememberFrame(timestamp, rotation, frameStartNanos, offsetX, offsetY, scaleX, scaleY);
+                poseLandmarker.detectAsync(mpImage, timestamp);
+                FrameTrace.event(FrameTrace.FRAME_SUBMITTED, rotation, timestamp);
+            } else {
+                FrameTrace.event(FrameTrace.FRAME_SUBMITTED, rotation, 0);
+                long submitNanos = System.nanoTime();
+                PoseLandmarkerResult result = poseLandmarker.detect(mpImage);
+                recordInference(submitNanos);
+                reportLatency(frameStartNanos);
+                processPoseResult(result, rotation, frameStartNanos, offsetX, offsetY, scaleX, scaleY);
+            }
+        } catch (Exception e) {
+            String errorMessage = "Error processing frame: " + e.getMessage();
+            Log.e(TAG, errorMessage, e);
+            FrameTrace.dumpOnError("detection failed");
+            notifyError(errorMessage);
+        } finally {
+            releaseFrame(bitmap);
+        }
+    }
 
-            this.currentRotation = rotation;
+    private void notifyError(String errorMessage) {
+        PoseDetectionListener current = listener;
+        if (current != null) {
+            current.onPoseError(errorMessage);
+        }
+    }
 
+    private void releaseFrame(Bitmap bitmap) {
+        FrameBufferPool pool = framePool;
+        if (pool != null) {
+            pool.releaseBitmap(bitmap);
+        }
+    }
 
-            PoseLandmarkerResult result = poseLandmarker.detect(mpImage);
-            processPoseResult(result, rotation);
+    // LIVE_STREAM requires strictly increasing timestamps, even if two frames land in the same millisecond
+    private long nextTimestamp() {
+        long timestamp = SystemClock.uptimeMillis();
+        if (timestamp <= lastSubmittedTimestamp) {
+            timestamp = lastSubmittedTimestamp + 1;
+        }
+        lastSubmittedTimestamp = timestamp;
+        return timestamp;
+    }
 
-            Log.d(TAG, "Processing frame with rotation: " + rotation);
+    private void rememberFrame(long timestamp, int rotation, long frameStartNanos,
+                               float offsetX, float offsetY, float scaleX, float scaleY) {
+        synchronized (pendingTimestamps) {
+            pendingTimestamps[pendingIndex] = timestamp;
+            pendingRotations[pendingIndex] = rotation;
+            pendingStartNanos[pendingIndex] = frameStartNanos;
+            pendingSubmitNanos[pendingIndex] = System.nanoTime();
+            int crop = pendingIndex * 4;
+            pendingCrops[crop] = offsetX;
+            pendingCrops[crop + 1] = offsetY;
+            pendingCrops[crop + 2] = scaleX;
+            pendingCrops[crop + 3] = scaleY;
+            pendingIndex = (pendingIndex + 1) % PENDING_FRAMES;
+        }
+    }
 
-        } catch (Exception e) {
-            String errorMessage = "Error processing frame: " + e.getMessage();
-            Log.e(TAG, errorMessage, e);
-            if (listener != null) {
-                listener.onPoseError(errorMessage);
+    private int pendingSlot(long timestamp) {
+        for (int i = 0; i < PENDING_FRAMES; i++) {
+            if (pendingTimestamps[i] == timestamp) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void reportLatency(long frameStartNanos) {
+        FrameRateGovernor g = governor;
+        if (g != null) {
+            g.onFrameCompleted(frameStartNanos, FrameRateGovernor.now());
+        }
+    }
+
+    private void recordInference(long submitNanos) {
+        PerfMetrics m = metrics;
+        if (m != null) {
+            m.record(PerfMetrics.Stage.INFER, System.nanoTime() - submitNanos);
+        }
+    }
+
+    private void onLiveStreamResult(PoseLandmarkerResult result) {
+        FrameTrace.begin("MediaPipePoseDetector:result");
+        try {
+            deliverLiveStreamResult(result);
+        } finally {
+            FrameTrace.end();
+        }
+    }
+
+    private void deliverLiveStreamResult(PoseLandmarkerResult result) {
+        long timestamp = result.timestampMs();
+        if (timestamp <= lastDeliveredTimestamp) {
+            dropStaleResult(timestamp);
+            return;
+        }
+
+        int rotation;
+        long frameStartNanos;
+        float offsetX, offsetY, scaleX, scaleY;
+        synchronized (pendingTimestamps) {
+            int slot = pendingSlot(timestamp);
+            if (slot < 0) {
+                // Overwritten by newer submissions: its rotation and crop are gone, so it cannot be mapped back
+                dropStaleResult(timestamp);
+                return;
             }
+            rotation = pendingRotations[slot];
+            frameStartNanos = pendingStartNanos[slot];
+            int crop = slot * 4;
+            offsetX = pendingCrops[crop];
+            offsetY = pendingCrops[crop + 1];
+            scaleX = pendingCrops[crop + 2];
+            scaleY = pendingCrops[crop + 3];
+            recordInference(pendingSubmitNanos[slot]);
+            reportLatency(pendingStartNanos[slot]);
         }
+        lastDeliveredTimestamp = timestamp;
+        processPoseResult(result, rotation, frameStartNanos, offsetX, offsetY, scaleX, scaleY);
+    }
+
+    private void dropStaleResult(long timestamp) {
+        staleResults++;
+        PerfMetrics m = metrics;
+        if (m != null) m.onFrameDropped();
+        FrameTrace.event(FrameTrace.STALE_RESULT, timestamp, lastDeliveredTimestamp);
+    }
+
+    public RunningMode getRunningMode() {
+        return runningMode;
     }
 
-    private void processPoseResult(PoseLandmarkerResult result, int rotation) {
+    public long getLastDeliveredTimestamp() {
+        return lastDeliveredTimestamp;
+    }
+
+    public long getStaleResultCount() {
+        return staleResults;
+    }
+
+    private void processPoseResult(PoseLandmarkerResult result, int rotation, long frameStartNanos,
+                                   float offsetX, float offsetY, float scaleX, float scaleY) {
+        PoseDetectionListener listener = this.listener;
         if (result == null || result.landmarks().isEmpty()) {
-            Log.d(TAG, "No pose landmarks detected");
+            FrameTrace.event(FrameTrace.POSE_EMPTY);
+            if (listener != null) {
+                listener.onPoseLost();
+            }
             return;
         }
 
-        Map<Integer, float[]> landmarks = new HashMap<>();
-        boolean hasRequiredLandmarks = false;
+        if (listener == null) return;
 
+        PoseFrame frame = poseFramePool.acquire();
         try {
             List<NormalizedLandmark> personLandmarks = result.landmarks().get(0);
+            int count = Math.min(personLandmarks.size(), PoseFrame.LANDMARK_COUNT);
 
-            for (int i = 0; i < personLandmarks.size(); i++) {
+            frame.reset(result.timestampMs(), rotation);
+            for (int i = 0; i < count; i++) {
                 NormalizedLandmark landmark = personLandmarks.get(i);
-                float x = landmark.x();
-                float y = landmark.y();
-                float z = landmark.z();
-                landmarks.put(i, new float[]{x, y, z});
-
-                if (i == 11 || i == 12) {
-                    hasRequiredLandmarks = true;
-                }
+                frame.set(i, landmark.x(), landmark.y(), landmark.z(), landmark.visibility().orElse(1f));
             }
-
-            if (listener != null) {
-                if (hasRequiredLandmarks) {
-                    listener.onPoseDetected(landmarks, rotation);
-                }
-                listener.onPoseUpdate(landmarks, rotation);
+            if (offsetX != 0f || offsetY != 0f || scaleX != 1f || scaleY != 1f) {
+                frame.remap(offsetX, offsetY, scaleX, scaleY);
             }
 
-            Log.d(TAG, "MediaPipe pose detected with " + landmarks.size() + " landmarks, rotation: " + rotation);
+            FrameTrace.event(FrameTrace.POSE_RESULT, count, rotation, result.timestampMs());
         } catch (Exception e) {
             Log.e(TAG, "Error processing pose result: " + e.getMessage(), e);
+            FrameTrace.dumpOnError("pose result failed");
+            frame.release();
+            return;
+        }
+
+        frame.setFrameStartNanos(frameStartNanos);
+        frame.setResultNanos(System.nanoTime());
+        if (frame.hasAll(REQUIRED_LANDMARKS)) {
+            listener.onPoseDetected(frame);
+        } else {
+            listener.onPoseUpdate(frame);
         }
     }
 
@@ -1,21 +1,44 @@
 package com.example.letsfitit;
 
 import android.content.Context;
-import android.graphics.*;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
 
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+import org.tensorflow.lite.gpu.CompatibilityList;
+import org.tensorflow.lite.gpu.GpuDelegate;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+public class Model implements SegmentationBackend {
+    public enum Delegate {
+        CPU,
+        XNNPACK,
+        // Falls back to XNNPACK on devices the GPU delegate does not support
+        GPU
+    }
 
-public class Model {
     private Interpreter interpreter;
+    private GpuDelegate gpuDelegate;
     private static final String TAG = "ClothingModel";
     private static final String MODEL_NAME = "clothing_segmenter_fixed.tflite";
 
@@ -29,13 +52,139 @@ public class Model {
 
 
     private static final int[] CLOTHING_CLASSES = {4, 5, 6, 7};
+    private static final long CLOTHING_CLASS_BITS = (1L << 4) | (1L << 5) | (1L << 6) | (1L << 7);
+
+    public static final int DEFAULT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int WARM_UP_RUNS = 2;
+
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
+    // Blur radius at output resolution; bilinear upsampling does the rest of the edge smoothing
+    private static final float MASK_BLUR_RADIUS = 1f;
+    // Scores above this count as "non-zero" in the debug output
+    private static final float ACTIVE_THRESHOLD = 0.1f;
+
+    // Channel value -> normalized input, so preprocessing is three table lookups per pixel
+    private static final float[] LUT_R = ImagingKernels.normalizationLut(MEAN[0], STD[0]);
+    private static final float[] LUT_G = ImagingKernels.normalizationLut(MEAN[1], STD[1]);
+    private static final float[] LUT_B = ImagingKernels.normalizationLut(MEAN[2], STD[2]);
+
+    // Decoded photos up to this many pixels keep their buffer between runs; larger ones are released
+    // after each run, because the shared Model outlives the screens that use it
+    private static final int RETAINED_SOURCE_PIXELS = 2 * 1024 * 1024;
+
+    // Preprocessing is split into this many row bands; the calling thread takes the last one
+    private static final int PREPROCESS_BANDS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // Tensor geometry read from the loaded model: input [1][h][w][3] NHWC, output [1][classes][h][w] NCHW
+    private final int inputWidth;
+    private final int inputHeight;
+    private final int numClasses;
+    private final int outputWidth;
+    private final int outputHeight;
+    // What was actually installed, after any GPU fallback
+    private Delegate delegate;
+
+    // Reused across calls: decoded photo (see RETAINED_SOURCE_PIXELS), resized input, the native-order input tensor and the output
+    private final PixelBuffer sourcePixels = new PixelBuffer(1, 1);
+    private final PixelBuffer resizedPixels;
+    private final ByteBuffer inputBuffer;
+    private final FloatBuffer inputFloats;
+    private final float[] output;
+    private final FloatBuffer outputFloats;
+    private final ExecutorService preprocessExecutor;
+    // The interpreter is created, warmed up, run and closed only on this thread: the GPU delegate's GL
+    // context is bound to the thread that created it. Confinement also serializes use of the buffers above.
+    private final ExecutorService modelExecutor =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "Model-inference"));
+    private volatile boolean closed;
+    private final ImagingKernels.LogitSummary summary;
+    private final byte[] maskAlpha;
+    private volatile boolean softMask;
 
     public Model(Context context) throws IOException {
-        interpreter = loadModelFile(context, MODEL_NAME);
-        Log.d(TAG, "TensorFlow Lite model loaded successfully!");
+        this(context, Delegate.XNNPACK, DEFAULT_THREADS);
+    }
+
+    public Model(Context context, Delegate delegate, int numThreads) throws IOException {
+        // {input height, input width, input bytes, classes, output height, output width, output elements}
+        int[] geometry;
+        try {
+            geometry = callOnModelThread(() -> {
+                try {
+                    interpreter = loadModelFile(context, MODEL_NAME, delegate, numThreads);
+                    return readGeometry();
+                } catch (Exception e) {
+                    releaseInterpreter();
+                    throw e;
+                }
+            });
+        } catch (IOException e) {
+            modelExecutor.shutdown();
+            throw e;
+        }
+        inputHeight = geometry[0];
+        inputWidth = geometry[1];
+        numClasses = geometry[3];
+        outputHeight = geometry[4];
+        outputWidth = geometry[5];
+
+        resizedPixels = new PixelBuffer(inputWidth, inputHeight);
+        inputBuffer = ByteBuffer.allocateDirect(geometry[2]).order(ByteOrder.nativeOrder());
+        inputFloats = inputBuffer.asFloatBuffer();
+        output = new float[geometry[6]];
+        outputFloats = FloatBuffer.wrap(output);
+        summary = new ImagingKernels.LogitSummary(numClasses, outputWidth, outputHeight);
+        maskAlpha = new byte[outputWidth * outputHeight];
+
+        preprocessExecutor = PREPROCESS_BANDS > 1
+                ? Executors.newFixedThreadPool(PREPROCESS_BANDS - 1, r -> new Thread(r, "Model-preprocess"))
+                : null;
+        Log.d(TAG, "TensorFlow Lite model loaded successfully! delegate=" + this.delegate + " threads=" + numThreads
+                + " input=" + inputWidth + "x" + inputHeight + " output=" + numClasses + "x" + outputWidth + "x" + outputHeight);
+    }
+
+    // Runs on modelExecutor
+    private int[] readGeometry() throws IOException {
+        Tensor inputTensor = interpreter.getInputTensor(0);
+        Tensor outputTensor = interpreter.getOutputTensor(0);
+        int[] inputShape = inputTensor.shape();
+        int[] outputShape = outputTensor.shape();
+        if (inputShape.length != 4 || inputShape[3] != 3 || inputTensor.dataType() != DataType.FLOAT32
+                || outputShape.length != 4 || outputShape[1] != CLASS_NAMES.length
+                || outputTensor.dataType() != DataType.FLOAT32) {
+            throw new IOException("Unexpected model tensors: input " + Arrays.toString(inputShape)
+                    + ", output " + Arrays.toString(outputShape));
+        }
+        return new int[]{inputShape[1], inputShape[2], inputTensor.numBytes(),
+                outputShape[1], outputShape[2], outputShape[3], outputTensor.numElements()};
     }
 
-    private Interpreter loadModelFile(Context context, String modelName) throws IOException {
+    // Blocks until task has run on modelExecutor
+    private <T> T callOnModelThread(Callable<T> task) throws IOException {
+        try {
+            return modelExecutor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the model thread", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    public Delegate getDelegate() {
+        return delegate;
+    }
+
+    // Soft masks fade garment edges by class probability instead of cutting at the winning class
+    public void setSoftMask(boolean softMask) {
+        this.softMask = softMask;
+    }
+
+    private Interpreter loadModelFile(Context context, String modelName, Delegate delegate, int numThreads)
+            throws IOException {
         android.content.res.AssetFileDescriptor fileDescriptor = context.getAssets().openFd(modelName);
         FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
         FileChannel fileChannel = inputStream.getChannel();
@@ -43,35 +192,81 @@ public class Model {
         long declaredLength = fileDescriptor.getDeclaredLength();
         MappedByteBuffer modelFile = fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
 
+        fileDescriptor.close();
+
         Interpreter.Options options = new Interpreter.Options();
-        options.setUseXNNPACK(true);
+        options.setNumThreads(numThreads);
+        if (delegate == Delegate.GPU) {
+            CompatibilityList compatibilityList = new CompatibilityList();
+            if (compatibilityList.isDelegateSupportedOnThisDevice()) {
+                gpuDelegate = new GpuDelegate(compatibilityList.getBestOptionsForThisDevice());
+                options.addDelegate(gpuDelegate);
+            } else {
+                Log.w(TAG, "GPU delegate not supported on this device, using XNNPACK");
+                delegate = Delegate.XNNPACK;
+            }
+        }
+        options.setUseXNNPACK(delegate == Delegate.XNNPACK);
+        this.delegate = delegate;
 
         return new Interpreter(modelFile, options);
     }
 
-    public Pair<Bitmap, List<String>> processImage(Bitmap image) {
-        try {
-            Log.d(TAG, "Starting image processing...");
-
-            // 1. Preprocess the image
-            float[][][][] input = preprocessBitmap(image);
-            Log.d(TAG, "Preprocessing completed");
+    // Runs a few inferences on a blank input so delegate setup, kernel selection and first-touch
+    // allocations happen here instead of in the user's first segmentation
+    public void warmUp() throws IOException {
+        callOnModelThread(() -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < WARM_UP_RUNS; i++) {
+                inputBuffer.rewind();
+                outputFloats.rewind();
+                interpreter.run(inputBuffer, outputFloats);
+            }
+            ImagingKernels.analyze(output, ACTIVE_THRESHOLD, CLOTHING_CLASS_BITS, summary);
+            Log.d(TAG, "Warm-up finished in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return null;
+        });
+    }
 
-            // 2. Run inference
-            float[][][][] output = new float[1][18][128][128];
-            interpreter.run(input, output);
-            Log.d(TAG, "Inference completed");
+    @Override
+    public String getName() {
+        return "on-device";
+    }
 
-            // 3. Debug: Print output statistics
-            debugOutput(output[0]);
+    @Override
+    public String getVersion() {
+        return MODEL_NAME + "/" + inputWidth + "x" + inputHeight + "/" + (softMask ? "soft" : "hard");
+    }
 
-            // 4. Create segmented image and get detected items
-            Bitmap segmentedImage = createSegmentedBitmap(image, output[0]);
-            List<String> detectedItems = getDetectedItems(output[0]);
+    @Override
+    public boolean isAvailable() {
+        return !closed;
+    }
 
-            Log.d(TAG, "Detected " + detectedItems.size() + " clothing items: " + detectedItems);
+    @Override
+    public void segment(Bitmap image, SegmentationBackend.Callback callback) {
+        try {
+            modelExecutor.execute(() -> {
+                try {
+                    callback.onSuccess(runSegmentation(image));
+                } catch (Exception e) {
+                    Log.e(TAG, "Error processing image", e);
+                    callback.onError("On-device segmentation failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            callback.onError("On-device model is closed");
+        }
+    }
 
-            return new Pair<>(segmentedImage, detectedItems);
+    public Pair<Bitmap, List<String>> processImage(Bitmap image) {
+        try {
+            SegmentationResult result = callOnModelThread(() -> runSegmentation(image));
+            List<String> labels = new ArrayList<>();
+            for (NetworkService.ClothingItem item : result.getDetectedItems()) {
+                labels.add(item.getLabel());
+            }
+            return new Pair<>(result.getSegmentedImage(), labels);
 
         } catch (Exception e) {
             Log.e(TAG, "Error processing image", e);
@@ -79,124 +274,100 @@ public class Model {
         }
     }
 
-    private float[][][][] preprocessBitmap(Bitmap bitmap) {
-        // Resize to 512x512 (model input size)
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, 512, 512, true);
-        float[][][][] input = new float[1][512][512][3];
-
-        for (int x = 0; x < 512; x++) {
-            for (int y = 0; y < 512; y++) {
-                int pixel = resizedBitmap.getPixel(x, y);
+    // Only ever runs on modelExecutor
+    private SegmentationResult runSegmentation(Bitmap image) throws Exception {
+        if (closed) throw new IllegalStateException("Model is closed");
+        long start = SystemClock.elapsedRealtime();
+        Log.d(TAG, "Starting image processing...");
 
-                // Normalize using ImageNet stats
-                input[0][y][x][0] = (Color.red(pixel) / 255.0f - 0.485f) / 0.229f;   // R
-                input[0][y][x][1] = (Color.green(pixel) / 255.0f - 0.456f) / 0.224f; // G
-                input[0][y][x][2] = (Color.blue(pixel) / 255.0f - 0.406f) / 0.225f;  // B
-            }
+        try {
+            return segmentPixels(ImageUtils.toPixelBuffer(image, sourcePixels), start);
+        } finally {
+            sourcePixels.trim(RETAINED_SOURCE_PIXELS);
         }
-        return input;
     }
 
-    private Bitmap createSegmentedBitmap(Bitmap original, float[][][] output) {
-        int width = original.getWidth();
-        int height = original.getHeight();
-
-        // Create output bitmap with transparency
-        Bitmap result = original.copy(Bitmap.Config.ARGB_8888, true);
-        Canvas canvas = new Canvas(result);
-
-        // Create mask for clothing items
-        Paint maskPaint = new Paint();
-        maskPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_IN));
-
-        Bitmap maskBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-
-        int clothingPixels = 0;
-        int totalPixels = 0;
-
-        // For each pixel, check if it belongs to clothing classes
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                totalPixels++;
-
-                // Map coordinates to output space (128x128)
-                int outputX = Math.min((x * 127) / width, 127);
-                int outputY = Math.min((y * 127) / height, 127);
-
-                // Find class with highest probability
-                float maxProb = 0;
-                int maxClass = 0;
-                for (int cls = 0; cls < 18; cls++) {
-                    if (output[cls][outputY][outputX] > maxProb) {
-                        maxProb = output[cls][outputY][outputX];
-                        maxClass = cls;
-                    }
-                }
-
-                // If it's a clothing class, make it opaque in the mask
-                boolean isClothing = false;
-                for (int clothClass : CLOTHING_CLASSES) {
-                    if (maxClass == clothClass) {
-                        isClothing = true;
-                        clothingPixels++;
-                        break;
-                    }
-                }
-
-                if (isClothing) {
-                    maskBitmap.setPixel(x, y, Color.WHITE);
-                } else {
-                    maskBitmap.setPixel(x, y, Color.TRANSPARENT);
-                }
+    private SegmentationResult segmentPixels(PixelBuffer pixels, long start) throws Exception {
+        // 1. Preprocess the image
+        preprocess(pixels);
+        Log.d(TAG, "Preprocessing completed");
+
+        // 2. Run inference. Output is [1][classes][h][w], read flat as class planes
+        inputBuffer.rewind();
+        outputFloats.rewind();
+        interpreter.run(inputBuffer, outputFloats);
+        Log.d(TAG, "Inference completed");
+
+        // 3. One pass over the output: class map, histogram, range and per-class activity
+        ImagingKernels.analyze(output, ACTIVE_THRESHOLD, CLOTHING_CLASS_BITS, summary);
+        debugOutput(summary);
+
+        // 4. Create segmented image and get detected items
+        Bitmap segmentedImage = createSegmentedBitmap(pixels, output, summary);
+        List<NetworkService.ClothingItem> detectedItems = getDetectedItems(summary.classCounts);
+
+        // The largest garment is the primary one; items are scored by the share of the image they cover
+        String primaryItem = "none";
+        double bestScore = 0;
+        for (NetworkService.ClothingItem item : detectedItems) {
+            if (item.getScore() > bestScore) {
+                bestScore = item.getScore();
+                primaryItem = item.getLabel();
             }
         }
+        Log.d(TAG, "Detected " + detectedItems.size() + " clothing items, primary: " + primaryItem);
 
-        Log.d(TAG, "Clothing pixels: " + clothingPixels + "/" + totalPixels +
-                " (" + (clothingPixels * 100 / totalPixels) + "%)");
-
-        // Apply Gaussian blur for smooth edges
-        Bitmap blurredMask = applyBlurToMask(maskBitmap);
-
-        // Apply the mask to create transparency
-        canvas.drawBitmap(blurredMask, 0, 0, maskPaint);
+        return new SegmentationResult(segmentedImage, detectedItems, primaryItem, getName(),
+                SystemClock.elapsedRealtime() - start);
+    }
 
-        return result;
+    // Resize to the model input size and normalize using ImageNet stats straight into inputBuffer.
+    // Each band resizes and normalizes its own rows, so bands never wait on each other.
+    private void preprocess(PixelBuffer pixels) throws Exception {
+        int rowsPerBand = (inputHeight + PREPROCESS_BANDS - 1) / PREPROCESS_BANDS;
+        List<Future<?>> pending = new ArrayList<>();
+        for (int start = 0; start < inputHeight - rowsPerBand; start += rowsPerBand) {
+            int rowStart = start;
+            pending.add(preprocessExecutor.submit(() -> preprocessRows(pixels, rowStart, rowStart + rowsPerBand)));
+        }
+        preprocessRows(pixels, pending.size() * rowsPerBand, inputHeight);
+        for (Future<?> band : pending) {
+            band.get();
+        }
     }
 
-    private Bitmap applyBlurToMask(Bitmap bitmap) {
-        // Simple blur implementation
-        Bitmap result = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(result);
-        Paint paint = new Paint();
-        paint.setMaskFilter(new BlurMaskFilter(5f, BlurMaskFilter.Blur.NORMAL));
-        canvas.drawBitmap(bitmap, 0, 0, paint);
-        return result;
+    private void preprocessRows(PixelBuffer pixels, int rowStart, int rowEnd) {
+        ImagingKernels.resizeBilinearRows(pixels, resizedPixels, rowStart, rowEnd);
+        ImagingKernels.normalizeRows(resizedPixels, LUT_R, LUT_G, LUT_B, inputFloats, rowStart, rowEnd);
     }
 
-    private List<String> getDetectedItems(float[][][] output) {
-        List<String> detectedItems = new ArrayList<>();
+    // Cuts the clothing out of pixels (modified in place) and returns it as a new bitmap
+    private Bitmap createSegmentedBitmap(PixelBuffer pixels, float[] output, ImagingKernels.LogitSummary summary) {
+        int totalCells = summary.classMap.length;
+        Log.d(TAG, "Clothing cells: " + summary.clothingCells + "/" + totalCells +
+                " (" + (summary.clothingCells * 100 / totalCells) + "%)");
+
+        // Alpha at output resolution: opaque on clothing cells, or clothing probability for soft masks
+        if (softMask) {
+            ImagingKernels.probabilityAlpha(output, numClasses, outputWidth, outputHeight, CLOTHING_CLASS_BITS, maskAlpha);
+        } else {
+            ImagingKernels.classAlpha(summary.classMap, maskAlpha.length, CLOTHING_CLASS_BITS, maskAlpha);
+        }
 
-        // Count pixels for each class to see which ones are present
-        int[] pixelCounts = new int[18];
-        int totalPixels = 128 * 128;
+        // Blur for smooth edges, then upsample straight into the photo's alpha (DST_IN); the only
+        // full-size allocation is the result bitmap
+        ImagingKernels.blurPlane(maskAlpha, outputWidth, outputHeight, MASK_BLUR_RADIUS);
+        ImagingKernels.applyAlphaUpsampled(maskAlpha, outputWidth, outputHeight, pixels);
 
-        for (int x = 0; x < 128; x++) {
-            for (int y = 0; y < 128; y++) {
-                // Find class with highest probability for this pixel
-                float maxProb = 0;
-                int maxClass = 0;
-                for (int cls = 0; cls < 18; cls++) {
-                    if (output[cls][y][x] > maxProb) {
-                        maxProb = output[cls][y][x];
-                        maxClass = cls;
-                    }
-                }
-                pixelCounts[maxClass]++;
-            }
-        }
+        return ImageUtils.toBitmap(pixels);
+    }
+
+    private List<NetworkService.ClothingItem> getDetectedItems(int[] pixelCounts) {
+        List<NetworkService.ClothingItem> detectedItems = new ArrayList<>();
+        int totalPixels = outputWidth * outputHeight;
 
         // Debug: Print all class percentages
-        for (int cls = 0; cls < 18; cls++) {
+        for (int cls = 0; cls < numClasses; cls++) {
             double percentage = (pixelCounts[cls] * 100.0) / totalPixels;
             if (percentage > 0.1) { // Only log significant classes
                 Log.d(TAG, String.format("Class %2d (%s): %.2f%%",
@@ -208,7 +379,7 @@ public class Model {
         for (int cls : CLOTHING_CLASSES) {
             double percentage = (pixelCounts[cls] * 100.0) / totalPixels;
             if (percentage > 0.5) { // Lowered threshold from 1.0% to 0.5%
-                detectedItems.add(CLASS_NAMES[cls]);
+                detectedItems.add(new NetworkService.ClothingItem(CLASS_NAMES[cls], percentage / 100.0));
                 Log.d(TAG, "Detected: " + CLASS_NAMES[cls] + " (" + percentage + "%)");
             }
         }
@@ -216,40 +387,36 @@ public class Model {
         return detectedItems;
     }
 
-    private void debugOutput(float[][][] output) {
+    private void debugOutput(ImagingKernels.LogitSummary summary) {
         // Print some output values to understand the range
-        float min = Float.MAX_VALUE;
-        float max = Float.MIN_VALUE;
-
-        for (int cls = 0; cls < 18; cls++) {
-            for (int y = 0; y < 128; y++) {
-                for (int x = 0; x < 128; x++) {
-                    float val = output[cls][y][x];
-                    if (val < min) min = val;
-                    if (val > max) max = val;
-                }
-            }
-        }
-
-        Log.d(TAG, "Output range: min=" + min + ", max=" + max);
+        Log.d(TAG, "Output range: min=" + summary.min + ", max=" + summary.max);
 
         // Check if we have any non-zero values in clothing classes
         for (int cls : CLOTHING_CLASSES) {
-            int nonZeroCount = 0;
-            for (int y = 0; y < 128; y++) {
-                for (int x = 0; x < 128; x++) {
-                    if (output[cls][y][x] > 0.1f) {
-                        nonZeroCount++;
-                    }
-                }
-            }
-            Log.d(TAG, "Class " + cls + " non-zero values: " + nonZeroCount);
+            Log.d(TAG, "Class " + cls + " non-zero values: " + summary.aboveThreshold[cls]);
         }
     }
 
-    public void close() {
+    // Segmentations still queued fail with "Model is closed"; the interpreter is then closed on the
+    // thread that created it
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        modelExecutor.execute(this::releaseInterpreter);
+        modelExecutor.shutdown();
+        if (preprocessExecutor != null) {
+            preprocessExecutor.shutdown();
+        }
+    }
+
+    private void releaseInterpreter() {
         if (interpreter != null) {
             interpreter.close();
+            interpreter = null;
+        }
+        if (gpuDelegate != null) {
+            gpuDelegate.close();
+            gpuDelegate = null;
         }
     }
 }
\ No newline at end of file
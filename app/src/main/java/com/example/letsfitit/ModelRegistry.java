@@ -0,0 +1,165 @@
+package com.example.letsfitit;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// App-wide owner of the segmentation Model and the pose detector. Both are loaded and warmed up on one
+// background thread (preload() right after login), shared by every activity that acquires them, and kept
+// loaded when the last user releases them so the next screen starts warm. Unused models are closed when
+// the system reports memory pressure. Loading, warm-up and closing are driven from the loader thread, so
+// they never race each other; acquire/release only touch the reference counts. Model additionally
+// confines its interpreter to its own inference thread.
+public final class ModelRegistry implements ComponentCallbacks2 {
+    private static final String TAG = "ModelRegistry";
+
+    private static ModelRegistry instance;
+
+    // Callbacks run on the loader thread
+    public interface Callback<T> {
+        void onReady(T value);
+        void onError(String error);
+    }
+
+    private final Context appContext;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> new Thread(r, "ModelRegistry"));
+    private final AtomicInteger modelRefs = new AtomicInteger();
+    private final AtomicInteger poseRefs = new AtomicInteger();
+    private volatile Model model;
+    private volatile MediaPipePoseDetector poseDetector;
+
+    private ModelRegistry(Context appContext) {
+        this.appContext = appContext;
+        appContext.registerComponentCallbacks(this);
+    }
+
+    public static synchronized ModelRegistry get(Context context) {
+        if (instance == null) {
+            instance = new ModelRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Loads and warms up both models in the background; calling it again is cheap
+    public void preload() {
+        loader.execute(() -> {
+            try {
+                loadModel();
+            } catch (Exception e) {
+                Log.e(TAG, "Segmentation model preload failed", e);
+            }
+            loadPoseDetector();
+        });
+    }
+
+    public void acquireModel(Callback<Model> callback) {
+        modelRefs.incrementAndGet();
+        loader.execute(() -> {
+            try {
+                callback.onReady(loadModel());
+            } catch (Exception e) {
+                Log.e(TAG, "Segmentation model unavailable", e);
+                callback.onError("On-device model unavailable: " + e.getMessage());
+            }
+        });
+    }
+
+    public void releaseModel() {
+        modelRefs.decrementAndGet();
+    }
+
+    // The detector comes back without a listener, pool, governor or metrics; the caller binds its own
+    // and unbinds them again before releasePoseDetector()
+    public void acquirePoseDetector(Callback<MediaPipePoseDetector> callback) {
+        poseRefs.incrementAndGet();
+        loader.execute(() -> {
+            MediaPipePoseDetector detector = loadPoseDetector();
+            if (detector.isReady()) {
+                callback.onReady(detector);
+            } else {
+                poseDetector = null;
+                callback.onError("Pose detector failed to load");
+            }
+        });
+    }
+
+    public void releasePoseDetector() {
+        poseRefs.decrementAndGet();
+    }
+
+    private Model loadModel() throws Exception {
+        Model current = model;
+        if (current == null) {
+            long start = System.nanoTime();
+            current = new Model(appContext);
+            try {
+                current.warmUp();
+            } catch (Exception e) {
+                current.close();
+                throw e;
+            }
+            model = current;
+            Log.d(TAG, "Segmentation model ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return current;
+    }
+
+    private MediaPipePoseDetector loadPoseDetector() {
+        MediaPipePoseDetector current = poseDetector;
+        if (current == null) {
+            long start = System.nanoTime();
+            current = new MediaPipePoseDetector(appContext, null);
+            current.warmUp();
+            poseDetector = current;
+            Log.d(TAG, "Pose detector ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return current;
+    }
+
+    // Closes whatever nobody holds. A concurrent acquire queues its load behind this task and reloads.
+    private void releaseUnused(String reason) {
+        loader.execute(() -> {
+            Model currentModel = model;
+            if (currentModel != null && modelRefs.get() == 0) {
+                model = null;
+                currentModel.close();
+                Log.d(TAG, "Released segmentation model (" + reason + ")");
+            }
+            MediaPipePoseDetector currentDetector = poseDetector;
+            if (currentDetector != null && poseRefs.get() == 0) {
+                poseDetector = null;
+                currentDetector.cleanup();
+                Log.d(TAG, "Released pose detector (" + reason + ")");
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // UI_HIDDEN only means the user left the app; keep the models warm for their return
+        if (level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN) {
+            releaseUnused("trim level " + level);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        releaseUnused("low memory");
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    public String describe() {
+        return "model " + (model != null ? "loaded" : "unloaded") + " refs=" + modelRefs.get()
+                + ", pose " + (poseDetector != null ? "loaded" : "unloaded") + " refs=" + poseRefs.get();
+    }
+}
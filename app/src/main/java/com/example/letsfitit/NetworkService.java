@@ -3,6 +3,7 @@ package com.example.letsfitit;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.os.SystemClock;
 import android.util.Base64;
 import android.util.Log;
 import org.json.JSONArray;
@@ -11,12 +12,19 @@ import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import okhttp3.*;
 
-public class NetworkService {
+public class NetworkService implements SegmentationBackend {
     private static final String TAG = "NetworkService";
     private static final String BASE_URL = "http://192.168.100.24:5000"; //  IP 192.168.100.24
+    // How long an unhealthy server is left alone before isAvailable() probes it again
+    private static final long HEALTH_RETRY_MS = 30_000;
     private OkHttpClient client;
+    // Result of the last health check or segment call; assumed up until one says otherwise
+    private volatile boolean healthy = true;
+    private volatile long lastHealthCheckMs;
+    private final AtomicBoolean reprobing = new AtomicBoolean();
 
     public NetworkService() {
         client = new OkHttpClient.Builder()
@@ -48,6 +56,44 @@ public class NetworkService {
         }
     }
 
+    @Override
+    public String getName() {
+        return "server";
+    }
+
+    @Override
+    public String getVersion() {
+        return "segment-v1@" + BASE_URL;
+    }
+
+    // A failed probe only holds until the next one: once HEALTH_RETRY_MS has passed the server is probed
+    // again in the background, so it comes back without restarting the activity
+    @Override
+    public boolean isAvailable() {
+        if (!healthy && SystemClock.elapsedRealtime() - lastHealthCheckMs >= HEALTH_RETRY_MS
+                && reprobing.compareAndSet(false, true)) {
+            checkServerHealth(isHealthy -> reprobing.set(false));
+        }
+        return healthy;
+    }
+
+    @Override
+    public void segment(Bitmap image, SegmentationBackend.Callback callback) {
+        long start = SystemClock.elapsedRealtime();
+        segmentImage(image, new SegmentationCallback() {
+            @Override
+            public void onSuccess(Bitmap segmentedImage, List<ClothingItem> detectedItems, String primaryItem) {
+                long latencyMs = SystemClock.elapsedRealtime() - start;
+                callback.onSuccess(new SegmentationResult(segmentedImage, detectedItems, primaryItem, getName(), latencyMs));
+            }
+
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        });
+    }
+
     public void segmentImage(Bitmap bitmap, SegmentationCallback callback) {
         new Thread(() -> {
             try {
@@ -96,9 +142,7 @@ public class NetworkService {
 
                     String primaryItem = result.getString("primary_item");
                     Log.d(TAG, "Primary item: " + primaryItem);
-
-                    // Set detected items in ARDataHolder for clothing type detection
-                    ARDataHolder.setDetectedItems(detectedItems);
+                    healthy = true;
 
                     if (callback != null) {
                         callback.onSuccess(segmentedBitmap, detectedItems, primaryItem);
@@ -121,6 +165,7 @@ public class NetworkService {
     }
 
     public void checkServerHealth(HealthCallback callback) {
+        lastHealthCheckMs = SystemClock.elapsedRealtime();
         new Thread(() -> {
             try {
                 Request request = new Request.Builder()
@@ -132,13 +177,15 @@ public class NetworkService {
 
                 JSONObject result = new JSONObject(responseData);
                 String status = result.getString("status");
+                healthy = "ready".equals(status);
 
                 if (callback != null) {
-                    callback.onHealthChecked("ready".equals(status));
+                    callback.onHealthChecked(healthy);
                 }
 
             } catch (Exception e) {
                 Log.e(TAG, "Health check failed", e);
+                healthy = false;
                 if (callback != null) {
                     callback.onHealthChecked(false);
                 }
@@ -0,0 +1,166 @@
+package com.example.letsfitit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-stage latency histograms and frame counters for the AR pipeline.
+// Recording is lock-free from any thread; formatting appends into a caller-owned StringBuilder
+// so the HUD can refresh without building format strings.
+public class PerfMetrics {
+    public enum Stage {
+        // YUV -> RGB conversion of the (cropped) analysis frame
+        CONVERT,
+        // Detector submission to result callback
+        INFER,
+        // Result callback to the main-thread pose update
+        DELIVER,
+        // Landmark mapping, garment placement and overlay update on vsync
+        PLACE,
+        // UI thread draw pass, from the window's frame metrics
+        DRAW
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final String[] STAGE_LABELS = new String[STAGES.length];
+
+    static {
+        for (Stage stage : STAGES) {
+            STAGE_LABELS[stage.ordinal()] = stage.name().toLowerCase();
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final AtomicLong processedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final long createdNanos = System.nanoTime();
+
+    // Effective FPS sampling, only touched by the thread calling sampleFps
+    private long lastSampleNanos = -1;
+    private long lastSampleProcessed = 0;
+    private float effectiveFps = 0f;
+
+    public PerfMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    // A frame made it all the way to a pose update
+    public void onFrameProcessed() {
+        processedFrames.incrementAndGet();
+    }
+
+    // A frame was discarded anywhere between capture and pose update
+    public void onFrameDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
+    public long getProcessedFrames() {
+        return processedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    // Processed frames per second since the previous call.
+    public float sampleFps(long nowNanos) {
+        long processed = processedFrames.get();
+        if (lastSampleNanos >= 0 && nowNanos > lastSampleNanos) {
+            effectiveFps = (processed - lastSampleProcessed) * 1_000_000_000f / (nowNanos - lastSampleNanos);
+        }
+        lastSampleNanos = nowNanos;
+        lastSampleProcessed = processed;
+        return effectiveFps;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        processedFrames.set(0);
+        droppedFrames.set(0);
+    }
+
+    // Compact form for the on-screen HUD: one line per stage with p50/p95/p99 in ms.
+    public void appendSummary(StringBuilder sb, float fps) {
+        sb.append("fps ");
+        appendTenths(sb, fps);
+        sb.append("  ok ").append(processedFrames.get());
+        sb.append("  drop ").append(droppedFrames.get());
+        for (Stage stage : STAGES) {
+            LatencyHistogram h = histograms[stage.ordinal()];
+            sb.append('\n');
+            appendPadded(sb, STAGE_LABELS[stage.ordinal()], 8);
+            appendMillis(sb, h.getPercentileNanos(0.50f));
+            sb.append(' ');
+            appendMillis(sb, h.getPercentileNanos(0.95f));
+            sb.append(' ');
+            appendMillis(sb, h.getPercentileNanos(0.99f));
+        }
+    }
+
+    // Full text dump for bug reports.
+    public String dump() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("uptime_ms=").append((System.nanoTime() - createdNanos) / 1_000_000L)
+                .append(" processed=").append(processedFrames.get())
+                .append(" dropped=").append(droppedFrames.get())
+                .append(" fps=");
+        appendTenths(sb, effectiveFps);
+        sb.append('\n');
+        sb.append("stage   count      mean     p50     p90     p95     p99     max (ms)\n");
+        for (Stage stage : STAGES) {
+            LatencyHistogram h = histograms[stage.ordinal()];
+            appendPadded(sb, STAGE_LABELS[stage.ordinal()], 8);
+            appendPadded(sb, Long.toString(h.getCount()), 7);
+            sb.append(' ');
+            appendMillis(sb, h.getMeanNanos());
+            sb.append(' ');
+            appendMillis(sb, h.getPercentileNanos(0.50f));
+            sb.append(' ');
+            appendMillis(sb, h.getPercentileNanos(0.90f));
+            sb.append(' ');
+            appendMillis(sb, h.getPercentileNanos(0.95f));
+            sb.append(' ');
+            appendMillis(sb, h.getPercentileNanos(0.99f));
+            sb.append(' ');
+            appendMillis(sb, h.getMaxNanos());
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Right-aligned, 7 characters wide, two decimals
+    private static void appendMillis(StringBuilder sb, long nanos) {
+        long hundredths = (nanos + 5_000L) / 10_000L;
+        int start = sb.length();
+        sb.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) sb.append('0');
+        sb.append(fraction);
+        while (sb.length() - start < 7) {
+            sb.insert(start, ' ');
+        }
+    }
+
+    // One decimal place
+    private static void appendTenths(StringBuilder sb, float value) {
+        long tenths = Math.round(value * 10f);
+        sb.append(tenths / 10).append('.').append(Math.abs(tenths % 10));
+    }
+
+    private static void appendPadded(StringBuilder sb, String text, int width) {
+        sb.append(text);
+        for (int i = text.length(); i < width; i++) {
+            sb.append(' ');
+        }
+    }
+}
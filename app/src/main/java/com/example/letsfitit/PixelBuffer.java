@@ -0,0 +1,87 @@
+package com.example.letsfitit;
+
+import java.util.Arrays;
+
+// ARGB_8888 pixels in an int[] with an explicit row stride, the layout Bitmap.getPixels/setPixels use.
+// Pixels are unpremultiplied (0xAARRGGBB). The backing array is reused by reshape() so callers can keep
+// one buffer per role instead of allocating per image.
+public class PixelBuffer {
+    private int[] data;
+    private int width;
+    private int height;
+    private int stride;
+
+    public PixelBuffer(int width, int height) {
+        this(new int[width * height], width, height, width);
+    }
+
+    // Wraps existing pixels; row y starts at data[y * stride]
+    public PixelBuffer(int[] data, int width, int height, int stride) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+        if (stride < width) throw new IllegalArgumentException("Stride " + stride + " < width " + width);
+        if (data.length < stride * (height - 1) + width) throw new IllegalArgumentException("Pixel array too small");
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+    }
+
+    // Changes the size, growing the backing array only when needed. Pixel contents are undefined afterwards.
+    public PixelBuffer reshape(int width, int height) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+        if (data.length < width * height) {
+            data = new int[width * height];
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = width;
+        return this;
+    }
+
+    // Drops a backing array larger than maxPixels, leaving a 1x1 buffer, so one huge image does not keep
+    // its array alive for as long as the owner lives
+    public PixelBuffer trim(int maxPixels) {
+        if (data.length > maxPixels) {
+            data = new int[1];
+            width = 1;
+            height = 1;
+            stride = 1;
+        }
+        return this;
+    }
+
+    public int[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int index(int x, int y) {
+        return y * stride + x;
+    }
+
+    public int get(int x, int y) {
+        return data[y * stride + x];
+    }
+
+    public void set(int x, int y, int argb) {
+        data[y * stride + x] = argb;
+    }
+
+    public void fill(int argb) {
+        for (int y = 0; y < height; y++) {
+            int row = y * stride;
+            Arrays.fill(data, row, row + width, argb);
+        }
+    }
+}
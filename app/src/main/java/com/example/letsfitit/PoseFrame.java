@@ -0,0 +1,185 @@
+package com.example.letsfitit;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+// One detected pose in a flat primitive layout: 33 landmarks x (x, y, z, visibility),
+// plus a bit per landmark telling whether it was present. Frames come from a Pool and are
+// handed back with release(), so the detector -> placement path does not allocate per frame.
+public class PoseFrame {
+    public static final int LANDMARK_COUNT = 33;
+    public static final int STRIDE = 4;
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int Z = 2;
+    public static final int VISIBILITY = 3;
+
+    // MediaPipe pose landmark indices used by placement
+    public static final int LEFT_SHOULDER = 11;
+    public static final int RIGHT_SHOULDER = 12;
+    public static final int LEFT_HIP = 23;
+    public static final int RIGHT_HIP = 24;
+
+    private static final long ALL_PRESENT = (1L << LANDMARK_COUNT) - 1;
+
+    private final float[] data = new float[LANDMARK_COUNT * STRIDE];
+    private final Pool pool;
+    private long timestampMs;
+    // Monotonic time the source camera frame was accepted, and the time the detector handed this result over
+    private long frameStartNanos;
+    private long resultNanos;
+    private long presentMask;
+    private int rotation;
+
+    public PoseFrame() {
+        this(null);
+    }
+
+    private PoseFrame(Pool pool) {
+        this.pool = pool;
+    }
+
+    public void reset(long timestampMs, int rotation) {
+        this.timestampMs = timestampMs;
+        this.rotation = rotation;
+        this.presentMask = 0;
+    }
+
+    public void set(int index, float x, float y, float z, float visibility) {
+        int offset = index * STRIDE;
+        data[offset + X] = x;
+        data[offset + Y] = y;
+        data[offset + Z] = z;
+        data[offset + VISIBILITY] = visibility;
+        presentMask |= 1L << index;
+    }
+
+    public void copyFrom(PoseFrame other) {
+        System.arraycopy(other.data, 0, data, 0, data.length);
+        timestampMs = other.timestampMs;
+        frameStartNanos = other.frameStartNanos;
+        resultNanos = other.resultNanos;
+        presentMask = other.presentMask;
+        rotation = other.rotation;
+    }
+
+    // Maps landmarks normalized to a crop back to the full frame: v' = offset + v * scale.
+    // z uses the horizontal scale, matching MediaPipe's convention of z relative to image width.
+    public void remap(float offsetX, float offsetY, float scaleX, float scaleY) {
+        for (int i = 0; i < LANDMARK_COUNT; i++) {
+            int offset = i * STRIDE;
+            data[offset + X] = offsetX + data[offset + X] * scaleX;
+            data[offset + Y] = offsetY + data[offset + Y] * scaleY;
+            data[offset + Z] = data[offset + Z] * scaleX;
+        }
+    }
+
+    public boolean has(int index) {
+        return (presentMask & (1L << index)) != 0;
+    }
+
+    public boolean hasAll(long mask) {
+        return (presentMask & mask) == mask;
+    }
+
+    public static long maskOf(int... indices) {
+        long mask = 0;
+        for (int index : indices) {
+            mask |= 1L << index;
+        }
+        return mask;
+    }
+
+    public boolean isComplete() {
+        return presentMask == ALL_PRESENT;
+    }
+
+    public float x(int index) {
+        return data[index * STRIDE + X];
+    }
+
+    public float y(int index) {
+        return data[index * STRIDE + Y];
+    }
+
+    public float z(int index) {
+        return data[index * STRIDE + Z];
+    }
+
+    public float visibility(int index) {
+        return data[index * STRIDE + VISIBILITY];
+    }
+
+    // Direct access for bulk consumers; landmark i starts at i * STRIDE
+    public float[] getData() {
+        return data;
+    }
+
+    public long getPresentMask() {
+        return presentMask;
+    }
+
+    public long getTimestampMs() {
+        return timestampMs;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public void setFrameStartNanos(long frameStartNanos) {
+        this.frameStartNanos = frameStartNanos;
+    }
+
+    public long getFrameStartNanos() {
+        return frameStartNanos;
+    }
+
+    public void setResultNanos(long resultNanos) {
+        this.resultNanos = resultNanos;
+    }
+
+    public long getResultNanos() {
+        return resultNanos;
+    }
+
+    // Returns the frame to the pool it came from. Frames created directly are simply dropped.
+    public void release() {
+        if (pool != null) {
+            pool.release(this);
+        }
+    }
+
+    public static class Pool {
+        private final ArrayBlockingQueue<PoseFrame> free;
+        private volatile long allocations = 0;
+
+        public Pool(int capacity) {
+            free = new ArrayBlockingQueue<>(capacity);
+            for (int i = 0; i < capacity; i++) {
+                free.offer(new PoseFrame(this));
+            }
+        }
+
+        public PoseFrame acquire() {
+            PoseFrame frame = free.poll();
+            if (frame == null) {
+                // Consumers fell behind; the extra frame is kept if there is room when it comes back
+                allocations++;
+                frame = new PoseFrame(this);
+            }
+            return frame;
+        }
+
+        void release(PoseFrame frame) {
+            free.offer(frame);
+        }
+
+        public int getAvailable() {
+            return free.size();
+        }
+
+        public long getAllocations() {
+            return allocations;
+        }
+    }
+}
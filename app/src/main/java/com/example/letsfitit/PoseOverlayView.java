@@ -8,14 +8,19 @@ import android.graphics.Paint;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class PoseOverlayView extends View {
     private final Paint keypointPaint;
     private final Paint linePaint;
     private final Paint textPaint;
-    private final List<float[]> keypoints = new ArrayList<>();
+    // Screen-space (x, y) per landmark index, valid where the matching presentMask bit is set
+    private final float[] keypoints = new float[PoseFrame.LANDMARK_COUNT * 2];
+    private long presentMask = 0;
+
+    // Batches rebuilt on commit and drawn with a single drawLines / drawPoints call each
+    private final float[] lineBatch = new float[POSE_CONNECTIONS.length * 4];
+    private final float[] pointBatch = new float[PoseFrame.LANDMARK_COUNT * 2];
+    private int lineBatchSize = 0;
+    private int pointBatchSize = 0;
 
     // Define pose connections (MediaPipe Pose landmarks)
     private static final int[][] POSE_CONNECTIONS = {
@@ -38,6 +43,20 @@ public class PoseOverlayView extends View {
     private static final String[] LANDMARK_NAMES = {
             "L Shoulder", "R Shoulder", "L Hip", "R Hip"
     };
+    private static final String[] LANDMARK_LABELS = new String[IMPORTANT_LANDMARKS.length];
+
+    // POSE_CONNECTIONS flattened to (a, b) offsets into the keypoint buffer
+    private static final int[] LINE_INDICES = new int[POSE_CONNECTIONS.length * 2];
+
+    static {
+        for (int i = 0; i < IMPORTANT_LANDMARKS.length; i++) {
+            LANDMARK_LABELS[i] = IMPORTANT_LANDMARKS[i] + ": " + LANDMARK_NAMES[i];
+        }
+        for (int i = 0; i < POSE_CONNECTIONS.length; i++) {
+            LINE_INDICES[i * 2] = POSE_CONNECTIONS[i][0];
+            LINE_INDICES[i * 2 + 1] = POSE_CONNECTIONS[i][1];
+        }
+    }
 
     public PoseOverlayView(Context context) {
         super(context);
@@ -64,7 +83,9 @@ public class PoseOverlayView extends View {
         Paint p = new Paint();
         p.setColor(Color.RED);
         p.setStyle(Paint.Style.FILL);
-        p.setStrokeWidth(15f);
+        // drawPoints renders round caps as circles of this diameter
+        p.setStrokeWidth(24f);
+        p.setStrokeCap(Paint.Cap.ROUND);
         p.setAntiAlias(true);
         return p;
     }
@@ -88,46 +109,69 @@ public class PoseOverlayView extends View {
     }
 
 
-    public void setKeypoints(List<float[]> newKeypoints) {
-        keypoints.clear();
-        if (newKeypoints != null) keypoints.addAll(newKeypoints);
-        invalidate();
+    // Producers write (x, y) per landmark index straight into this buffer, then call commitKeypoints
+    public float[] getPointBuffer() {
+        return keypoints;
     }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-
+    public void commitKeypoints(long mask) {
+        presentMask = mask;
+        rebuildBatches();
+        invalidate();
+    }
 
-        for (int[] connection : POSE_CONNECTIONS) {
-            if (connection.length >= 2 &&
-                    connection[0] < keypoints.size() &&
-                    connection[1] < keypoints.size()) {
+    public void setKeypoints(float[] points, long mask) {
+        if (points == null) {
+            commitKeypoints(0);
+        } else {
+            if (points != keypoints) {
+                System.arraycopy(points, 0, keypoints, 0, Math.min(points.length, keypoints.length));
+            }
+            commitKeypoints(mask);
+        }
+    }
 
-                float[] point1 = keypoints.get(connection[0]);
-                float[] point2 = keypoints.get(connection[1]);
+    private boolean isPresent(int index) {
+        return index < PoseFrame.LANDMARK_COUNT && (presentMask & (1L << index)) != 0;
+    }
 
-                if (point1.length >= 2 && point2.length >= 2) {
-                    canvas.drawLine(point1[0], point1[1], point2[0], point2[1], linePaint);
-                }
-            }
+    private void rebuildBatches() {
+        int n = 0;
+        for (int i = 0; i < LINE_INDICES.length; i += 2) {
+            int a = LINE_INDICES[i];
+            int b = LINE_INDICES[i + 1];
+            if (!isPresent(a) || !isPresent(b)) continue;
+            lineBatch[n++] = keypoints[a * 2];
+            lineBatch[n++] = keypoints[a * 2 + 1];
+            lineBatch[n++] = keypoints[b * 2];
+            lineBatch[n++] = keypoints[b * 2 + 1];
         }
+        lineBatchSize = n;
 
+        n = 0;
+        for (int i = 0; i < PoseFrame.LANDMARK_COUNT; i++) {
+            if (!isPresent(i)) continue;
+            pointBatch[n++] = keypoints[i * 2];
+            pointBatch[n++] = keypoints[i * 2 + 1];
+        }
+        pointBatchSize = n;
+    }
 
-        for (int i = 0; i < keypoints.size(); i++) {
-            float[] point = keypoints.get(i);
-            if (point.length >= 2) {
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
 
-                canvas.drawCircle(point[0], point[1], 12f, keypointPaint);
+        if (lineBatchSize > 0) {
+            canvas.drawLines(lineBatch, 0, lineBatchSize, linePaint);
+        }
+        if (pointBatchSize > 0) {
+            canvas.drawPoints(pointBatch, 0, pointBatchSize, keypointPaint);
+        }
 
-                for (int j = 0; j < IMPORTANT_LANDMARKS.length; j++) {
-                    if (i == IMPORTANT_LANDMARKS[j]) {
-                        String label = IMPORTANT_LANDMARKS[j] + ": " + LANDMARK_NAMES[j];
-                        canvas.drawText(label, point[0] + 20, point[1] - 20, textPaint);
-                        break;
-                    }
-                }
-            }
+        for (int j = 0; j < IMPORTANT_LANDMARKS.length; j++) {
+            int index = IMPORTANT_LANDMARKS[j];
+            if (!isPresent(index)) continue;
+            canvas.drawText(LANDMARK_LABELS[j], keypoints[index * 2] + 20, keypoints[index * 2 + 1] - 20, textPaint);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package com.example.letsfitit;
+
+// Per-landmark One-Euro filter with constant-velocity extrapolation.
+// update() is fed each inference result; predict() can then be called once per display frame
+// to place the garment between (and slightly ahead of) the much less frequent pose results.
+public class PoseSmoother {
+    private static final int COORDS = 3;
+    private static final float NANOS_PER_SECOND = 1_000_000_000f;
+
+    private final float minCutoff;
+    private final float beta;
+    private final float derivativeCutoff;
+    private final long maxPredictionNanos;
+
+    // Filtered value and filtered derivative (units per second), indexed [landmark * COORDS + axis]
+    private final float[] value = new float[PoseFrame.LANDMARK_COUNT * COORDS];
+    private final float[] velocity = new float[PoseFrame.LANDMARK_COUNT * COORDS];
+    private final float[] visibility = new float[PoseFrame.LANDMARK_COUNT];
+    private long initializedMask = 0;
+    private long presentMask = 0;
+    private long lastTimeNanos = -1;
+    private int rotation = 0;
+
+    public PoseSmoother() {
+        this(1.5f, 2.0f, 1.0f, 120_000_000L);
+    }
+
+    // minCutoff (Hz) sets jitter removal at rest, beta how quickly the cutoff opens up with speed,
+    // maxPredictionNanos caps how far past the last result predict() extrapolates.
+    public PoseSmoother(float minCutoff, float beta, float derivativeCutoff, long maxPredictionNanos) {
+        this.minCutoff = minCutoff;
+        this.beta = beta;
+        this.derivativeCutoff = derivativeCutoff;
+        this.maxPredictionNanos = maxPredictionNanos;
+    }
+
+    public void update(PoseFrame frame, long timeNanos) {
+        float dt = lastTimeNanos < 0 ? 0f : (timeNanos - lastTimeNanos) / NANOS_PER_SECOND;
+        if (lastTimeNanos >= 0 && dt <= 0f) return;
+
+        float[] data = frame.getData();
+        for (int i = 0; i < PoseFrame.LANDMARK_COUNT; i++) {
+            if (!frame.has(i)) continue;
+            long bit = 1L << i;
+            int src = i * PoseFrame.STRIDE;
+            int dst = i * COORDS;
+            visibility[i] = data[src + PoseFrame.VISIBILITY];
+
+            if ((initializedMask & bit) == 0 || dt == 0f) {
+                for (int axis = 0; axis < COORDS; axis++) {
+                    value[dst + axis] = data[src + axis];
+                    velocity[dst + axis] = 0f;
+                }
+                initializedMask |= bit;
+                continue;
+            }
+
+            for (int axis = 0; axis < COORDS; axis++) {
+                float raw = data[src + axis];
+                float previous = value[dst + axis];
+                float rawVelocity = (raw - previous) / dt;
+                float filteredVelocity = lowPass(velocity[dst + axis], rawVelocity, alpha(derivativeCutoff, dt));
+                float cutoff = minCutoff + beta * Math.abs(filteredVelocity);
+                velocity[dst + axis] = filteredVelocity;
+                value[dst + axis] = lowPass(previous, raw, alpha(cutoff, dt));
+            }
+        }
+
+        presentMask = frame.getPresentMask();
+        rotation = frame.getRotation();
+        lastTimeNanos = timeNanos;
+    }
+
+    // Writes the smoothed pose extrapolated to timeNanos into out. Returns false before the first update.
+    public boolean predict(long timeNanos, PoseFrame out) {
+        if (lastTimeNanos < 0) return false;
+
+        long aheadNanos = Math.max(0L, Math.min(timeNanos - lastTimeNanos, maxPredictionNanos));
+        float ahead = aheadNanos / NANOS_PER_SECOND;
+
+        out.reset(timeNanos / 1_000_000L, rotation);
+        for (int i = 0; i < PoseFrame.LANDMARK_COUNT; i++) {
+            if ((presentMask & (1L << i)) == 0) continue;
+            int src = i * COORDS;
+            out.set(i,
+                    value[src] + velocity[src] * ahead,
+                    value[src + 1] + velocity[src + 1] * ahead,
+                    value[src + 2] + velocity[src + 2] * ahead,
+                    visibility[i]);
+        }
+        return true;
+    }
+
+    public long getLastUpdateNanos() {
+        return lastTimeNanos;
+    }
+
+    public void reset() {
+        initializedMask = 0;
+        presentMask = 0;
+        lastTimeNanos = -1;
+    }
+
+    private static float alpha(float cutoff, float dt) {
+        float tau = 1f / (2f * (float) Math.PI * cutoff);
+        return 1f / (1f + tau / dt);
+    }
+
+    private static float lowPass(float previous, float raw, float alpha) {
+        return previous + alpha * (raw - previous);
+    }
+}
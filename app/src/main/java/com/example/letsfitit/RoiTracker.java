@@ -0,0 +1,227 @@
+package com.example.letsfitit;
+
+// Tracks a padded body bounding box across frames so only that region is converted and sent
+// to pose inference. Works in analysis-buffer coordinates (before rotation), the same space the
+// detector's normalized landmarks live in. Falls back to the full frame when tracking is lost.
+public class RoiTracker {
+    private static final int MIN_VISIBLE_LANDMARKS = 6;
+    // Output sizes are rounded to this so the frame pool only ever sees a handful of bitmap sizes
+    private static final int SIZE_QUANTUM = 32;
+    // A tracked crop is sized this much larger than the box so jitter fits inside it, and only shrinks
+    // once the box drops below SHRINK_BELOW of it. Between the two the size (and pooled bitmap) is reused.
+    private static final float HEADROOM = 0.15f;
+    private static final float SHRINK_BELOW = 0.6f;
+
+    private final float padding;
+    private final int targetLongSide;
+    private final int maxMisses;
+    private final float minVisibility;
+    private final float minRoiFraction;
+
+    // Normalized ROI in the full frame; valid only while tracking
+    private boolean tracking = false;
+    private float roiLeft, roiTop, roiRight, roiBottom;
+    private int misses = 0;
+    private long trackedFrames = 0;
+    private long fullFrames = 0;
+
+    // Tracking session: step is pinned when tracking starts and the output size only changes with hysteresis.
+    // sessionStep is 0 when no session is open.
+    private int sessionStep = 0;
+    private int sessionFrameWidth, sessionFrameHeight;
+    private int stickyWidth, stickyHeight;
+
+    public RoiTracker() {
+        this(0.3f, 384, 2, 0.5f, 0.3f);
+    }
+
+    // padding: fraction of the box size added on every side.
+    // targetLongSide: the converted crop is downscaled until its long side is at most this many pixels.
+    // maxMisses: consecutive frames without a usable pose before returning to full-frame search.
+    // minRoiFraction: the crop never gets smaller than this fraction of the frame's short side.
+    public RoiTracker(float padding, int targetLongSide, int maxMisses, float minVisibility, float minRoiFraction) {
+        this.padding = padding;
+        this.targetLongSide = targetLongSide;
+        this.maxMisses = maxMisses;
+        this.minVisibility = minVisibility;
+        this.minRoiFraction = minRoiFraction;
+    }
+
+    // Feeds a pose in full-frame normalized coordinates.
+    public synchronized void onPose(PoseFrame frame) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        int visible = 0;
+
+        for (int i = 0; i < PoseFrame.LANDMARK_COUNT; i++) {
+            if (!frame.has(i) || frame.visibility(i) < minVisibility) continue;
+            float x = frame.x(i);
+            float y = frame.y(i);
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+            visible++;
+        }
+
+        if (visible < MIN_VISIBLE_LANDMARKS) {
+            onPoseLost();
+            return;
+        }
+
+        float padX = (maxX - minX) * padding;
+        float padY = (maxY - minY) * padding;
+        roiLeft = clamp01(minX - padX);
+        roiTop = clamp01(minY - padY);
+        roiRight = clamp01(maxX + padX);
+        roiBottom = clamp01(maxY + padY);
+        tracking = roiRight > roiLeft && roiBottom > roiTop;
+        misses = 0;
+    }
+
+    public synchronized void onPoseLost() {
+        if (++misses >= maxMisses) {
+            tracking = false;
+        }
+    }
+
+    public synchronized void reset() {
+        tracking = false;
+        misses = 0;
+        sessionStep = 0;
+    }
+
+    public synchronized boolean isTracking() {
+        return tracking;
+    }
+
+    // Picks the region of a frameWidth x frameHeight buffer to convert for the next inference.
+    public synchronized void computeCrop(int frameWidth, int frameHeight, Crop out) {
+        int left = 0, top = 0, right = frameWidth, bottom = frameHeight;
+        int step, outWidth, outHeight;
+
+        if (tracking) {
+            left = (int) (roiLeft * frameWidth);
+            top = (int) (roiTop * frameHeight);
+            right = (int) Math.ceil(roiRight * frameWidth);
+            bottom = (int) Math.ceil(roiBottom * frameHeight);
+
+            // Never zoom in further than minRoiFraction of the short side
+            int minSize = (int) (Math.min(frameWidth, frameHeight) * minRoiFraction);
+            if (right - left < minSize) {
+                int grow = minSize - (right - left);
+                left -= grow / 2;
+                right += grow - grow / 2;
+            }
+            if (bottom - top < minSize) {
+                int grow = minSize - (bottom - top);
+                top -= grow / 2;
+                bottom += grow - grow / 2;
+            }
+            int boxWidth = Math.min(frameWidth, right - left);
+            int boxHeight = Math.min(frameHeight, bottom - top);
+
+            if (sessionStep == 0 || sessionFrameWidth != frameWidth || sessionFrameHeight != frameHeight) {
+                startSession(frameWidth, frameHeight, boxWidth, boxHeight);
+            } else {
+                // The body moved far closer or further away than when the step was pinned
+                int longSide = Math.max(boxWidth, boxHeight) / sessionStep;
+                if (longSide > targetLongSide * 2 || (sessionStep > 1 && longSide * 4 < targetLongSide)) {
+                    startSession(frameWidth, frameHeight, boxWidth, boxHeight);
+                }
+            }
+            step = sessionStep;
+            stickyWidth = stickySize(stickyWidth, ceilDiv(boxWidth, step), frameWidth / step);
+            stickyHeight = stickySize(stickyHeight, ceilDiv(boxHeight, step), frameHeight / step);
+            outWidth = stickyWidth;
+            outHeight = stickyHeight;
+            trackedFrames++;
+        } else {
+            sessionStep = 0;
+            step = Math.max(1, ceilDiv(Math.max(frameWidth, frameHeight), targetLongSide));
+            outWidth = quantize(frameWidth / step, frameWidth / step);
+            outHeight = quantize(frameHeight / step, frameHeight / step);
+            fullFrames++;
+        }
+
+        int cropWidth = outWidth * step;
+        int cropHeight = outHeight * step;
+
+        // Keep the box centred on the body but inside the frame after rounding
+        int centerX = (left + right) / 2;
+        int centerY = (top + bottom) / 2;
+        left = Math.max(0, Math.min(centerX - cropWidth / 2, frameWidth - cropWidth));
+        top = Math.max(0, Math.min(centerY - cropHeight / 2, frameHeight - cropHeight));
+
+        out.frameWidth = frameWidth;
+        out.frameHeight = frameHeight;
+        out.left = left;
+        out.top = top;
+        out.step = step;
+        out.outWidth = outWidth;
+        out.outHeight = outHeight;
+        out.fullFrame = !tracking;
+    }
+
+    private void startSession(int frameWidth, int frameHeight, int boxWidth, int boxHeight) {
+        int longSide = (int) Math.ceil(Math.max(boxWidth, boxHeight) * (1f + HEADROOM));
+        sessionStep = Math.max(1, ceilDiv(longSide, targetLongSide));
+        sessionFrameWidth = frameWidth;
+        sessionFrameHeight = frameHeight;
+        stickyWidth = 0;
+        stickyHeight = 0;
+    }
+
+    // Keeps the current size while the needed size fits in it and has not shrunk far below it
+    private static int stickySize(int current, int needed, int max) {
+        if (current > 0 && needed <= current && needed >= current * SHRINK_BELOW) {
+            return Math.min(current, max);
+        }
+        return quantize((int) Math.ceil(needed * (1f + HEADROOM)), max);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static int quantize(int size, int max) {
+        int rounded = ((size + SIZE_QUANTUM - 1) / SIZE_QUANTUM) * SIZE_QUANTUM;
+        return Math.max(1, Math.min(rounded, max));
+    }
+
+    private static float clamp01(float v) {
+        return v < 0f ? 0f : (v > 1f ? 1f : v);
+    }
+
+    public synchronized long getTrackedFrames() {
+        return trackedFrames;
+    }
+
+    public synchronized long getFullFrames() {
+        return fullFrames;
+    }
+
+    // Crop of the analysis buffer: source pixels (left + i * step, top + j * step) for i < outWidth, j < outHeight.
+    public static class Crop {
+        public int frameWidth, frameHeight;
+        public int left, top, step, outWidth, outHeight;
+        public boolean fullFrame;
+
+        // Landmarks normalized to the crop map to the full frame as offset + value * scale
+        public float offsetX() {
+            return (float) left / frameWidth;
+        }
+
+        public float offsetY() {
+            return (float) top / frameHeight;
+        }
+
+        public float scaleX() {
+            return (float) (outWidth * step) / frameWidth;
+        }
+
+        public float scaleY() {
+            return (float) (outHeight * step) / frameHeight;
+        }
+    }
+}
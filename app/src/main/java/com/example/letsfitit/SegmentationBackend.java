@@ -0,0 +1,22 @@
+package com.example.letsfitit;
+
+import android.graphics.Bitmap;
+
+// Something that can cut the clothing out of a photo: the on-device Model, the Flask server, or a
+// wrapper around either. segment() never blocks the caller; the callback fires on a background thread.
+public interface SegmentationBackend {
+    interface Callback {
+        void onSuccess(SegmentationResult result);
+        void onError(String error);
+    }
+
+    String getName();
+
+    // Changes whenever the same input could segment differently (model file, server, mask mode)
+    String getVersion();
+
+    // False when the backend is known to be unable to serve a request right now
+    boolean isAvailable();
+
+    void segment(Bitmap image, Callback callback);
+}
@@ -0,0 +1,346 @@
+package com.example.letsfitit;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Two-tier cache of segmentation results, keyed by a hash of the decoded photo's pixels plus the name
+// and version of the backend that produced them. Recent results stay in a memory LRU bounded by bitmap
+// bytes (results bigger than the whole tier are left to disk alone); every result is also written to a size-bounded disk LRU (segmented image + items JSON) in the
+// cache dir. Images stay PNG: they are full resolution and mostly transparent, which PNG shrinks to a
+// fraction of the raw pixels.
+// wrap() puts the cache in front of the router and looks a photo up under every backend the router could
+// use before routing, so a re-selected photo never reaches the server or the model, whichever one the
+// router would pick this time.
+public final class SegmentationCache {
+    private static final String TAG = "SegmentationCache";
+    private static final String DIRECTORY = "segmentation";
+    private static final long MAX_DISK_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_MEMORY_BYTES =
+            (int) Math.min(32L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+
+    private static SegmentationCache instance;
+
+    private final File directory;
+    // Lookups and disk reads; writes go to their own thread so a hit never waits behind an encode
+    private final ExecutorService lookupExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "SegmentationCache"));
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "SegmentationCache-write"));
+    private final LruCache<String, SegmentationResult> memory;
+    // Disk index in access order: key -> bytes of its image and JSON. Guarded by itself.
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(64, 0.75f, true);
+    private long diskBytes;
+    private boolean diskIndexLoaded;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong memorySkips = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    private SegmentationCache(Context appContext) {
+        directory = new File(appContext.getCacheDir(), DIRECTORY);
+        memory = new LruCache<String, SegmentationResult>(MAX_MEMORY_BYTES) {
+            @Override
+            protected int sizeOf(String key, SegmentationResult value) {
+                return value.getSegmentedImage().getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, SegmentationResult oldValue, SegmentationResult newValue) {
+                if (evicted) memoryEvictions.incrementAndGet();
+            }
+        };
+    }
+
+    public static synchronized SegmentationCache get(Context context) {
+        if (instance == null) {
+            instance = new SegmentationCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public SegmentationBackend wrap(SegmentationRouter router) {
+        return new CachedRouter(router);
+    }
+
+    private final class CachedRouter implements SegmentationBackend {
+        private final SegmentationRouter router;
+
+        CachedRouter(SegmentationRouter router) {
+            this.router = router;
+        }
+
+        @Override
+        public String getName() {
+            return router.getName();
+        }
+
+        @Override
+        public String getVersion() {
+            return router.getVersion();
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return router.isAvailable();
+        }
+
+        @Override
+        public void segment(Bitmap image, Callback callback) {
+            lookupExecutor.execute(() -> {
+                long start = SystemClock.elapsedRealtime();
+                String pixelHash = hashOf(image);
+                SegmentationResult cached = lookup(pixelHash, router.getBackends());
+                if (cached != null) {
+                    // Delivered on the lookup thread, so callers hand anything slow to their own worker
+                    callback.onSuccess(cached.asCached(SystemClock.elapsedRealtime() - start));
+                    return;
+                }
+                misses.incrementAndGet();
+                router.segment(image, new Callback() {
+                    @Override
+                    public void onSuccess(SegmentationResult result) {
+                        // Stored under whichever backend answered, fallback included
+                        for (SegmentationBackend backend : router.getBackends()) {
+                            if (backend.getName().equals(result.getBackend())) {
+                                store(keyOf(pixelHash, backend), result);
+                                break;
+                            }
+                        }
+                        callback.onSuccess(result);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                });
+            });
+        }
+    }
+
+    // Pixel hash of the decoded image, read a row at a time so large photos need no full-size copy
+    private static String hashOf(Bitmap image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        long hash = 0xCBF29CE484222325L ^ ((long) width << 32 | height);
+        for (int y = 0; y < height; y++) {
+            image.getPixels(row, 0, width, 0, y, width, 1);
+            hash = ImagingKernels.hashPixels(hash, row, 0, width);
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static String keyOf(String pixelHash, SegmentationBackend backend) {
+        String version = backend.getName() + "@" + backend.getVersion();
+        return pixelHash + "-" + Integer.toHexString(version.hashCode());
+    }
+
+    // Memory first for every backend, then disk, so a memory hit never waits on a disk read
+    private SegmentationResult lookup(String pixelHash, List<SegmentationBackend> backends) {
+        List<String> keys = new ArrayList<>(backends.size());
+        for (SegmentationBackend backend : backends) {
+            String key = keyOf(pixelHash, backend);
+            SegmentationResult result = memory.get(key);
+            if (result != null) {
+                memoryHits.incrementAndGet();
+                return result;
+            }
+            keys.add(key);
+        }
+        for (String key : keys) {
+            SegmentationResult result = lookupDisk(key);
+            if (result != null) return result;
+        }
+        return null;
+    }
+
+    private SegmentationResult lookupDisk(String key) {
+        ensureDiskIndex();
+        synchronized (diskIndex) {
+            if (diskIndex.get(key) == null) return null;
+        }
+        SegmentationResult result;
+        try {
+            result = readFromDisk(key);
+        } catch (Exception e) {
+            Log.w(TAG, "Dropping unreadable cache entry " + key, e);
+            result = null;
+        }
+        if (result == null) {
+            removeFromDisk(key);
+            return null;
+        }
+        diskHits.incrementAndGet();
+        putInMemory(key, result);
+        return result;
+    }
+
+    private void store(String key, SegmentationResult result) {
+        putInMemory(key, result);
+        writeExecutor.execute(() -> {
+            try {
+                writeToDisk(key, result);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to write cache entry " + key, e);
+                removeFromDisk(key);
+            }
+        });
+    }
+
+    // LruCache would accept an entry larger than its maximum and evict it straight away, counting a
+    // full-resolution photo as an eviction; such results are skipped here and only kept on disk
+    private void putInMemory(String key, SegmentationResult result) {
+        if (result.getSegmentedImage().getAllocationByteCount() > memory.maxSize()) {
+            memorySkips.incrementAndGet();
+            return;
+        }
+        memory.put(key, result);
+    }
+
+    private void writeToDisk(String key, SegmentationResult result) throws Exception {
+        ensureDiskIndex();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        File image = imageFile(key);
+        try (OutputStream out = new FileOutputStream(image)) {
+            result.getSegmentedImage().compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+
+        JSONObject meta = new JSONObject();
+        meta.put("backend", result.getBackend());
+        meta.put("primary", result.getPrimaryItem());
+        JSONArray items = new JSONArray();
+        for (NetworkService.ClothingItem item : result.getDetectedItems()) {
+            items.put(new JSONObject().put("label", item.getLabel()).put("score", item.getScore()));
+        }
+        meta.put("items", items);
+        File metaFile = metaFile(key);
+        Files.write(metaFile.toPath(), meta.toString().getBytes(StandardCharsets.UTF_8));
+
+        long bytes = image.length() + metaFile.length();
+        synchronized (diskIndex) {
+            Long previous = diskIndex.put(key, bytes);
+            diskBytes += bytes - (previous != null ? previous : 0);
+            trimDisk();
+        }
+    }
+
+    private SegmentationResult readFromDisk(String key) throws Exception {
+        File metaFile = metaFile(key);
+        File image = imageFile(key);
+        JSONObject meta = new JSONObject(new String(Files.readAllBytes(metaFile.toPath()), StandardCharsets.UTF_8));
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeFile(image.getPath(), options);
+        if (bitmap == null) return null;
+
+        List<NetworkService.ClothingItem> items = new ArrayList<>();
+        JSONArray array = meta.getJSONArray("items");
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            items.add(new NetworkService.ClothingItem(item.getString("label"), item.getDouble("score")));
+        }
+
+        // Recently used for the LRU order after a restart, too
+        long now = System.currentTimeMillis();
+        image.setLastModified(now);
+        metaFile.setLastModified(now);
+        return new SegmentationResult(bitmap, items, meta.getString("primary"), meta.getString("backend"), 0);
+    }
+
+    // Rebuilds the index from the directory once per process, oldest first
+    private void ensureDiskIndex() {
+        synchronized (diskIndex) {
+            if (diskIndexLoaded) return;
+            diskIndexLoaded = true;
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+            if (files == null) return;
+            Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File meta : files) {
+                String key = meta.getName().substring(0, meta.getName().length() - ".json".length());
+                long bytes = meta.length() + imageFile(key).length();
+                diskIndex.put(key, bytes);
+                diskBytes += bytes;
+            }
+            trimDisk();
+        }
+    }
+
+    // Caller holds diskIndex
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = diskIndex.entrySet().iterator();
+        while (diskBytes > MAX_DISK_BYTES && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            diskBytes -= entry.getValue();
+            deleteFiles(entry.getKey());
+            eldest.remove();
+            diskEvictions.incrementAndGet();
+        }
+    }
+
+    private void removeFromDisk(String key) {
+        synchronized (diskIndex) {
+            Long bytes = diskIndex.remove(key);
+            if (bytes != null) diskBytes -= bytes;
+        }
+        deleteFiles(key);
+    }
+
+    private void deleteFiles(String key) {
+        imageFile(key).delete();
+        metaFile(key).delete();
+    }
+
+    private File imageFile(String key) {
+        return new File(directory, key + ".png");
+    }
+
+    private File metaFile(String key) {
+        return new File(directory, key + ".json");
+    }
+
+    public String describe() {
+        long memoryHitCount = memoryHits.get();
+        long diskHitCount = diskHits.get();
+        long lookups = memoryHitCount + diskHitCount + misses.get();
+        int hitPercent = lookups == 0 ? 0 : (int) ((memoryHitCount + diskHitCount) * 100 / lookups);
+        int entries;
+        long bytes;
+        synchronized (diskIndex) {
+            entries = diskIndex.size();
+            bytes = diskBytes;
+        }
+        return "hits " + hitPercent + "% (" + memoryHitCount + " memory, " + diskHitCount + " disk, "
+                + misses.get() + " misses), memory " + memory.size() / 1024 + " KB, "
+                + memoryEvictions.get() + " evicted, " + memorySkips.get() + " too large; disk " + entries
+                + " entries, " + bytes / 1024 + " KB, "
+                + diskEvictions.get() + " evicted";
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.letsfitit;
+
+import android.graphics.Bitmap;
+
+import java.util.List;
+
+// What every SegmentationBackend hands back, whichever one did the work
+public class SegmentationResult {
+    private final Bitmap segmentedImage;
+    private final List<NetworkService.ClothingItem> detectedItems;
+    private final String primaryItem;
+    private final String backend;
+    private final long latencyMs;
+    private final boolean cached;
+
+    public SegmentationResult(Bitmap segmentedImage, List<NetworkService.ClothingItem> detectedItems,
+                              String primaryItem, String backend, long latencyMs) {
+        this(segmentedImage, detectedItems, primaryItem, backend, latencyMs, false);
+    }
+
+    private SegmentationResult(Bitmap segmentedImage, List<NetworkService.ClothingItem> detectedItems,
+                               String primaryItem, String backend, long latencyMs, boolean cached) {
+        this.segmentedImage = segmentedImage;
+        this.detectedItems = detectedItems;
+        this.primaryItem = primaryItem;
+        this.backend = backend;
+        this.latencyMs = latencyMs;
+        this.cached = cached;
+    }
+
+    // The same result served from SegmentationCache; latencyMs becomes the lookup time
+    public SegmentationResult asCached(long lookupMs) {
+        return new SegmentationResult(segmentedImage, detectedItems, primaryItem, backend, lookupMs, true);
+    }
+
+    public Bitmap getSegmentedImage() {
+        return segmentedImage;
+    }
+
+    public List<NetworkService.ClothingItem> getDetectedItems() {
+        return detectedItems;
+    }
+
+    // Label of the main garment, or "none" when nothing was detected
+    public String getPrimaryItem() {
+        return primaryItem;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.letsfitit;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Sends each photo to the on-device model or the server, whichever should answer sooner.
+// Both sides keep an exponentially weighted latency estimate; the server's is per megapixel since
+// upload time grows with the image. A failed server call marks it down for a cool-down period, and
+// a low battery or a hot device shifts work to the server. If the chosen backend fails, the other
+// one gets a single retry.
+public class SegmentationRouter implements SegmentationBackend {
+    private static final String TAG = "SegmentationRouter";
+
+    private static final float EWMA_ALPHA = 0.3f;
+    // Starting estimates until the first real measurements come in
+    private static final float LOCAL_PRIOR_MS = 700f;
+    private static final float REMOTE_PRIOR_MS_PER_MP = 500f;
+    private static final float REMOTE_OVERHEAD_MS = 150f;
+    private static final long REMOTE_COOL_DOWN_MS = 30_000;
+    private static final int LOW_BATTERY_PERCENT = 20;
+
+    private final SegmentationBackend remote;
+    private final BatteryManager batteryManager;
+    private final PowerManager powerManager;
+    private volatile SegmentationBackend local;
+
+    private volatile float localEwmaMs = LOCAL_PRIOR_MS;
+    private volatile float remoteEwmaMsPerMp = REMOTE_PRIOR_MS_PER_MP;
+    private volatile long remoteDownUntilMs = 0;
+
+    public SegmentationRouter(Context context, SegmentationBackend local, SegmentationBackend remote) {
+        this.local = local;
+        this.remote = remote;
+        batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    // The model loads in the background, so it can join after construction
+    public void setLocalBackend(SegmentationBackend local) {
+        this.local = local;
+    }
+
+    // Every backend this router can send to, whether or not it is usable right now
+    public List<SegmentationBackend> getBackends() {
+        List<SegmentationBackend> backends = new ArrayList<>(2);
+        SegmentationBackend current = local;
+        if (current != null) backends.add(current);
+        if (remote != null) backends.add(remote);
+        return backends;
+    }
+
+    @Override
+    public String getName() {
+        return "router";
+    }
+
+    @Override
+    public String getVersion() {
+        return "1";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return isLocalUsable() || isRemoteUsable();
+    }
+
+    @Override
+    public void segment(Bitmap image, Callback callback) {
+        float megapixels = image.getWidth() * (float) image.getHeight() / 1_000_000f;
+        SegmentationBackend first = choose(megapixels);
+        if (first == null) {
+            callback.onError("No segmentation backend available");
+            return;
+        }
+        SegmentationBackend second = first == local ? (isRemoteUsable() ? remote : null)
+                : (isLocalUsable() ? local : null);
+        run(first, second, image, megapixels, callback);
+    }
+
+    private void run(SegmentationBackend backend, SegmentationBackend fallback, Bitmap image,
+                     float megapixels, Callback callback) {
+        long start = SystemClock.elapsedRealtime();
+        backend.segment(image, new Callback() {
+            @Override
+            public void onSuccess(SegmentationResult result) {
+                recordLatency(backend, SystemClock.elapsedRealtime() - start, megapixels);
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.w(TAG, backend.getName() + " failed: " + error);
+                if (backend == remote) {
+                    remoteDownUntilMs = SystemClock.elapsedRealtime() + REMOTE_COOL_DOWN_MS;
+                }
+                if (fallback != null) {
+                    run(fallback, null, image, megapixels, callback);
+                } else {
+                    callback.onError(error);
+                }
+            }
+        });
+    }
+
+    private SegmentationBackend choose(float megapixels) {
+        boolean localUsable = isLocalUsable();
+        boolean remoteUsable = isRemoteUsable();
+        if (!localUsable || !remoteUsable) {
+            return localUsable ? local : (remoteUsable ? remote : null);
+        }
+
+        float localEstimate = localEwmaMs;
+        float remoteEstimate = REMOTE_OVERHEAD_MS + remoteEwmaMsPerMp * megapixels;
+        String reason = "latency";
+        if (isDeviceConstrained()) {
+            // Running the model drains the battery and heats the device further; only stay local
+            // if the server is much slower
+            localEstimate *= 3f;
+            reason = "battery/thermal";
+        }
+        SegmentationBackend choice = localEstimate <= remoteEstimate ? local : remote;
+        Log.d(TAG, "Routing " + megapixels + " MP to " + choice.getName() + " (" + reason
+                + ", local " + (int) localEstimate + " ms, remote " + (int) remoteEstimate + " ms)");
+        return choice;
+    }
+
+    private void recordLatency(SegmentationBackend backend, long latencyMs, float megapixels) {
+        if (backend == local) {
+            localEwmaMs += EWMA_ALPHA * (latencyMs - localEwmaMs);
+        } else if (backend == remote) {
+            float perMp = Math.max(0f, latencyMs - REMOTE_OVERHEAD_MS) / Math.max(0.1f, megapixels);
+            remoteEwmaMsPerMp += EWMA_ALPHA * (perMp - remoteEwmaMsPerMp);
+            remoteDownUntilMs = 0;
+        }
+    }
+
+    private boolean isLocalUsable() {
+        SegmentationBackend backend = local;
+        return backend != null && backend.isAvailable();
+    }
+
+    private boolean isRemoteUsable() {
+        return remote != null && remote.isAvailable()
+                && SystemClock.elapsedRealtime() >= remoteDownUntilMs;
+    }
+
+    private boolean isDeviceConstrained() {
+        if (powerManager != null) {
+            if (powerManager.isPowerSaveMode()) return true;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                    && powerManager.getCurrentThermalStatus() >= PowerManager.THERMAL_STATUS_SEVERE) {
+                return true;
+            }
+        }
+        if (batteryManager != null && !batteryManager.isCharging()) {
+            int level = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            return level > 0 && level < LOW_BATTERY_PERCENT;
+        }
+        return false;
+    }
+
+    public String describe() {
+        return "local " + (isLocalUsable() ? (int) localEwmaMs + " ms" : "unavailable")
+                + ", remote " + (isRemoteUsable() ? (int) (REMOTE_OVERHEAD_MS + remoteEwmaMsPerMp) + " ms at 1 MP" : "down");
+    }
+}
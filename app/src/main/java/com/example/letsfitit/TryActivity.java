@@ -5,6 +5,7 @@ import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -15,16 +16,33 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.appbar.MaterialToolbar;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class TryActivity extends AppCompatActivity {
+    private static final String TAG = "TryActivity";
     private static final int PICK_IMAGE = 1;
     private NetworkService networkService;
+    private SegmentationRouter segmentationRouter;
+    private SegmentationCache segmentationCache;
+    // The router behind the result cache
+    private SegmentationBackend segmentation;
+    // Garment preparation runs here rather than on whichever thread delivered the result: cache hits
+    // arrive on the cache's single lookup thread and model results on the inference thread
+    private final ExecutorService prepareExecutor =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "TryActivity-prepare"));
     private ImageView originalImageView;
     private ImageView resultImageView;
     private TextView itemsListTextView;
     private Button selectButton;
     private Button btnStartAR;
+    // Backend status shown before the first segmentation, main thread only
+    private boolean statusShown;
+    private boolean serverChecked;
+    private boolean serverHealthy;
+    private boolean localModelReady;
+    private boolean localModelFailed;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -46,8 +64,14 @@ public class TryActivity extends AppCompatActivity {
         selectButton = findViewById(R.id.select_button);
         btnStartAR = findViewById(R.id.btnStartAR);
 
-        // Initialize network service
+        // Initialize network service and the router that picks between it and the on-device model
+        // The result cache sits in front of the router, so re-selecting a photo costs a hash instead of a
+        // round trip, whichever backend segmented it first
         networkService = new NetworkService();
+        segmentationCache = SegmentationCache.get(this);
+        segmentationRouter = new SegmentationRouter(this, null, networkService);
+        segmentation = segmentationCache.wrap(segmentationRouter);
+        loadModel();
 
         // Check server health on startup
         checkServerHealth();
@@ -69,23 +93,59 @@ public class TryActivity extends AppCompatActivity {
         btnStartAR.setEnabled(false);
     }
 
+    // The shared model is normally already loaded and warm; until it is, everything goes to the server
+    private void loadModel() {
+        ModelRegistry.get(this).acquireModel(new ModelRegistry.Callback<Model>() {
+            @Override
+            public void onReady(Model model) {
+                segmentationRouter.setLocalBackend(model);
+                runOnUiThread(() -> {
+                    localModelReady = true;
+                    if (statusShown) showBackendStatus();
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, error);
+                runOnUiThread(() -> {
+                    localModelFailed = true;
+                    if (statusShown) showBackendStatus();
+                });
+            }
+        });
+    }
+
     private void checkServerHealth() {
         networkService.checkServerHealth(new NetworkService.HealthCallback() {
             @Override
             public void onHealthChecked(boolean isHealthy) {
                 runOnUiThread(() -> {
-                    if (isHealthy) {
-                        Toast.makeText(TryActivity.this, "Server connected!", Toast.LENGTH_SHORT).show();
-                        itemsListTextView.setText("Server ready - select an image");
-                    } else {
-                        Toast.makeText(TryActivity.this, "Server not available", Toast.LENGTH_LONG).show();
-                        itemsListTextView.setText("Server offline - check connection");
-                    }
+                    Toast.makeText(TryActivity.this, isHealthy ? "Server connected!" : "Server not available",
+                            isHealthy ? Toast.LENGTH_SHORT : Toast.LENGTH_LONG).show();
+                    serverChecked = true;
+                    serverHealthy = isHealthy;
+                    statusShown = true;
+                    showBackendStatus();
                 });
             }
         });
     }
 
+    // On-device fallback is only claimed once the model is attached to the router
+    private void showBackendStatus() {
+        if (!serverChecked) return;
+        if (serverHealthy) {
+            itemsListTextView.setText("Server ready - select an image");
+        } else if (localModelReady) {
+            itemsListTextView.setText("Server offline - using on-device segmentation");
+        } else if (localModelFailed) {
+            itemsListTextView.setText("Server offline and on-device model unavailable");
+        } else {
+            itemsListTextView.setText("Server offline - loading on-device model...");
+        }
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -102,8 +162,8 @@ public class TryActivity extends AppCompatActivity {
                     return;
                 }
 
-                // Process the image with the server
-                processImageWithServer(originalBitmap);
+                // Segment on the device or the server, whichever the router picks
+                segmentImage(originalBitmap);
 
             } catch (IOException e) {
                 Toast.makeText(this, "Error loading image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -112,43 +172,30 @@ public class TryActivity extends AppCompatActivity {
         }
     }
 
-    private void processImageWithServer(Bitmap originalBitmap) {
+    private void segmentImage(Bitmap originalBitmap) {
         originalImageView.setImageBitmap(originalBitmap);
-        itemsListTextView.setText("Sending to server...");
+        statusShown = false;
+        itemsListTextView.setText("Segmenting...");
         selectButton.setEnabled(false);
 
-        networkService.segmentImage(originalBitmap, new NetworkService.SegmentationCallback() {
+        segmentation.segment(originalBitmap, new SegmentationBackend.Callback() {
             @Override
-            public void onSuccess(Bitmap segmentedImage, List<NetworkService.ClothingItem> detectedItems, String primaryItem) {
-                runOnUiThread(() -> {
-                    selectButton.setEnabled(true);
-                    resultImageView.setImageBitmap(segmentedImage);
-
-
-                    if (detectedItems.isEmpty() || primaryItem.equals("none")) {
-                        itemsListTextView.setText("Trying to segment anyway...");
-
-                        btnStartAR.setEnabled(true);
-                        ARDataHolder.setSegmentedBitmap(segmentedImage);
-                        ARDataHolder.setDetectedItems(detectedItems);
-                        Toast.makeText(TryActivity.this, "Proceeding with segmentation for POC", Toast.LENGTH_SHORT).show();
-                    } else {
-
-                        StringBuilder itemsText = new StringBuilder("Detected");
-
-                        itemsListTextView.setText(itemsText.toString());
-                        btnStartAR.setEnabled(true);
-                        ARDataHolder.setSegmentedBitmap(segmentedImage);
-                        ARDataHolder.setDetectedItems(detectedItems);
-                    }
-                });
+            public void onSuccess(SegmentationResult result) {
+                Log.d(TAG, "Segmented by " + result.getBackend() + (result.isCached() ? " (cached)" : "")
+                        + " in " + result.getLatencyMs() + " ms; router: " + segmentationRouter.describe()
+                        + "; cache: " + segmentationCache.describe());
+                try {
+                    prepareExecutor.execute(() -> showResult(result, prepareGarment(result.getSegmentedImage())));
+                } catch (RejectedExecutionException e) {
+                    Log.d(TAG, "Result arrived after the activity was destroyed");
+                }
             }
 
             @Override
             public void onError(String error) {
                 runOnUiThread(() -> {
                     selectButton.setEnabled(true);
-                    Toast.makeText(TryActivity.this, "Server error: " + error, Toast.LENGTH_LONG).show();
+                    Toast.makeText(TryActivity.this, "Segmentation error: " + error, Toast.LENGTH_LONG).show();
                     itemsListTextView.setText("Error: " + error);
                     btnStartAR.setEnabled(false);
                 });
@@ -156,10 +203,39 @@ public class TryActivity extends AppCompatActivity {
         });
     }
 
+    private void showResult(SegmentationResult result, Bitmap garment) {
+        runOnUiThread(() -> {
+            selectButton.setEnabled(true);
+            resultImageView.setImageBitmap(result.getSegmentedImage());
+
+            if (result.getDetectedItems().isEmpty() || result.getPrimaryItem().equals("none")) {
+                itemsListTextView.setText("Trying to segment anyway...");
+                Toast.makeText(TryActivity.this, "Proceeding with segmentation for POC", Toast.LENGTH_SHORT).show();
+            } else {
+                itemsListTextView.setText("Detected");
+            }
+            btnStartAR.setEnabled(true);
+            ARDataHolder.setResult(result);
+            ARDataHolder.setSegmentedBitmap(garment);
+            ARDataHolder.saveGarment(TryActivity.this);
+        });
+    }
+
+    // On prepareExecutor; the full-size result keeps showing in resultImageView
+    private Bitmap prepareGarment(Bitmap segmented) {
+        try {
+            return GarmentPreparer.prepareForOverlay(segmented, true);
+        } catch (Exception e) {
+            Log.e(TAG, "Garment preparation failed, using the full segmented image", e);
+            return segmented;
+        }
+    }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-
+        prepareExecutor.shutdown();
+        segmentationRouter.setLocalBackend(null);
+        ModelRegistry.get(this).releaseModel();
     }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package com.example.letsfitit;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Converts YUV_420_888 planes straight to packed ARGB ints.
+// Handles arbitrary row/pixel strides (I420, NV12, NV21 layouts) and reuses its output buffer.
+public class YuvToRgbConverter {
+    // BT.601 full range (JFIF) coefficients in 16.16 fixed point, same as the old JPEG round trip
+    private static final int CR_TO_R = 91881;
+    private static final int CB_TO_G = 22554;
+    private static final int CR_TO_G = 46802;
+    private static final int CB_TO_B = 116130;
+    private static final int HALF = 1 << 15;
+
+    private final int threadCount;
+    private final ExecutorService executor;
+    private final Band[] bands;
+    private int[] argbBuffer;
+
+    public YuvToRgbConverter() {
+        this(1);
+    }
+
+    public YuvToRgbConverter(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        if (this.threadCount > 1) {
+            executor = Executors.newFixedThreadPool(this.threadCount);
+            bands = new Band[this.threadCount];
+            for (int i = 0; i < bands.length; i++) {
+                bands[i] = new Band();
+            }
+        } else {
+            executor = null;
+            bands = null;
+        }
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    // Converts into the internal buffer, which is only reallocated when the frame size grows.
+    public int[] convert(ByteBuffer yBuffer, int yRowStride,
+                         ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                         int width, int height) {
+        int size = width * height;
+        if (argbBuffer == null || argbBuffer.length < size) {
+            argbBuffer = new int[size];
+        }
+        convert(yBuffer, yRowStride, uBuffer, vBuffer, uvRowStride, uvPixelStride, width, height, argbBuffer);
+        return argbBuffer;
+    }
+
+    public void convert(ByteBuffer yBuffer, int yRowStride,
+                        ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                        int width, int height, int[] out) {
+        convertRegion(yBuffer, yRowStride, uBuffer, vBuffer, uvRowStride, uvPixelStride,
+                0, 0, width, height, 1, out);
+    }
+
+    // Converts only the crop starting at (left, top), taking every step-th pixel in both directions.
+    // The output is outWidth x outHeight, so the source region is (outWidth * step) x (outHeight * step).
+    public void convertRegion(ByteBuffer yBuffer, int yRowStride,
+                              ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                              int left, int top, int outWidth, int outHeight, int step, int[] out) {
+        if (out.length < outWidth * outHeight) {
+            throw new IllegalArgumentException("Output buffer too small: " + out.length + " < " + (outWidth * outHeight));
+        }
+
+        if (executor == null || outHeight < threadCount * 4) {
+            convertRows(yBuffer, yRowStride, uBuffer, vBuffer, uvRowStride, uvPixelStride,
+                    left, top, step, outWidth, 0, outHeight, out);
+            return;
+        }
+
+        // Row bands are kept even so each band owns whole chroma rows when step is 1
+        int bandHeight = ((outHeight + threadCount - 1) / threadCount + 1) & ~1;
+        CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            Band band = bands[i];
+            band.set(yBuffer, yRowStride, uBuffer, vBuffer, uvRowStride, uvPixelStride, left, top, step, outWidth,
+                    Math.min(outHeight, i * bandHeight), Math.min(outHeight, (i + 1) * bandHeight), out, done);
+            executor.execute(band);
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Scalar kernel. Uses absolute gets only, so several bands can share the same plane buffers.
+    // Output rows [rowStart, rowEnd) are sampled from source pixel (left + col * step, top + row * step).
+    static void convertRows(ByteBuffer yBuffer, int yRowStride,
+                            ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                            int left, int top, int step, int outWidth, int rowStart, int rowEnd, int[] out) {
+        for (int row = rowStart; row < rowEnd; row++) {
+            int srcRow = top + row * step;
+            int yOffset = srcRow * yRowStride;
+            int uvOffset = (srcRow >> 1) * uvRowStride;
+            int outOffset = row * outWidth;
+
+            for (int col = 0; col < outWidth; col++) {
+                int srcCol = left + col * step;
+                int uvIndex = uvOffset + (srcCol >> 1) * uvPixelStride;
+                int y = yBuffer.get(yOffset + srcCol) & 0xFF;
+                int cb = (uBuffer.get(uvIndex) & 0xFF) - 128;
+                int cr = (vBuffer.get(uvIndex) & 0xFF) - 128;
+                out[outOffset + col] = toArgb(y, cb, cr);
+            }
+        }
+    }
+
+    static int toArgb(int y, int cb, int cr) {
+        int yScaled = (y << 16) + HALF;
+        int r = (yScaled + CR_TO_R * cr) >> 16;
+        int g = (yScaled - CB_TO_G * cb - CR_TO_G * cr) >> 16;
+        int b = (yScaled + CB_TO_B * cb) >> 16;
+
+        r = r < 0 ? 0 : (r > 255 ? 255 : r);
+        g = g < 0 ? 0 : (g > 255 ? 255 : g);
+        b = b < 0 ? 0 : (b > 255 ? 255 : b);
+
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static class Band implements Runnable {
+        private ByteBuffer yBuffer, uBuffer, vBuffer;
+        private int yRowStride, uvRowStride, uvPixelStride, left, top, step, outWidth, rowStart, rowEnd;
+        private int[] out;
+        private CountDownLatch done;
+
+        void set(ByteBuffer yBuffer, int yRowStride, ByteBuffer uBuffer, ByteBuffer vBuffer,
+                 int uvRowStride, int uvPixelStride, int left, int top, int step, int outWidth,
+                 int rowStart, int rowEnd, int[] out, CountDownLatch done) {
+            this.yBuffer = yBuffer;
+            this.yRowStride = yRowStride;
+            this.uBuffer = uBuffer;
+            this.vBuffer = vBuffer;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+            this.left = left;
+            this.top = top;
+            this.step = step;
+            this.outWidth = outWidth;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.out = out;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                convertRows(yBuffer, yRowStride, uBuffer, vBuffer, uvRowStride, uvPixelStride,
+                        left, top, step, outWidth, rowStart, rowEnd, out);
+            } finally {
+                // Drop frame references so the camera buffers are not kept alive between frames
+                yBuffer = uBuffer = vBuffer = null;
+                out = null;
+                CountDownLatch latch = done;
+                done = null;
+                latch.countDown();
+            }
+        }
+    }
+}
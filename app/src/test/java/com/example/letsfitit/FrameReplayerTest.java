@@ -0,0 +1,74 @@
+package com.example.letsfitit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FrameReplayerTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int FRAMES = 30;
+    private static final long FRAME_NANOS = 33_333_333L;
+    private static final long START_NANOS = 5_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replayIsDeterministic() throws Exception {
+        File recording = folder.newFile("session.lffr");
+        recordSyntheticSession(recording);
+
+        FrameReplayer.RecordedDetector detector = FrameReplayer.RecordedDetector.load(recording);
+        assertEquals(FRAMES / 2, detector.size());
+
+        FrameReplayer.Result first = new FrameReplayer(detector, 1080, 2340).replay(recording);
+        FrameReplayer.Result second = new FrameReplayer(detector, 1080, 2340).replay(recording);
+
+        assertEquals(FRAMES, first.frames);
+        assertEquals(FRAMES / 2, first.posesDetected);
+        assertTrue(first.placements > 0);
+        assertEquals(first.placements, second.placements);
+        assertEquals(first.placementChecksum, second.placementChecksum);
+        assertEquals(FRAMES, first.metrics.get(PerfMetrics.Stage.CONVERT).getCount());
+    }
+
+    // Semi-planar YUV like most camera HALs hand out: interleaved chroma, pixel stride 2
+    private static void recordSyntheticSession(File file) throws Exception {
+        byte[] y = new byte[WIDTH * HEIGHT];
+        byte[] uv = new byte[WIDTH * HEIGHT / 2];
+        for (int i = 0; i < y.length; i++) y[i] = (byte) (i % WIDTH);
+        for (int i = 0; i < uv.length; i++) uv[i] = (byte) (96 + i % 64);
+        ByteBuffer yBuffer = ByteBuffer.wrap(y);
+        ByteBuffer uBuffer = ByteBuffer.wrap(uv, 0, uv.length - 1).slice();
+        ByteBuffer vBuffer = ByteBuffer.wrap(uv, 1, uv.length - 1).slice();
+
+        PoseFrame pose = new PoseFrame();
+        try (FrameRecorder recorder = new FrameRecorder(file, FRAMES)) {
+            for (int i = 0; i < FRAMES; i++) {
+                long startNanos = START_NANOS + i * FRAME_NANOS;
+                while (!recorder.recordFrame(startNanos, WIDTH, HEIGHT, 270, yBuffer, WIDTH,
+                        uBuffer, vBuffer, WIDTH, 2)) {
+                    Thread.sleep(1);
+                }
+                if (i % 2 != 0) continue;
+
+                float sway = 0.02f * (float) Math.sin(i / 4.0);
+                pose.reset((startNanos + 20_000_000L) / 1_000_000L, 270);
+                pose.setFrameStartNanos(startNanos);
+                pose.set(PoseFrame.LEFT_SHOULDER, 0.35f + sway, 0.4f, 0f, 0.9f);
+                pose.set(PoseFrame.RIGHT_SHOULDER, 0.35f + sway, 0.6f, 0f, 0.9f);
+                pose.set(PoseFrame.LEFT_HIP, 0.6f + sway, 0.42f, 0f, 0.9f);
+                pose.set(PoseFrame.RIGHT_HIP, 0.6f + sway, 0.58f, 0f, 0.9f);
+                while (!recorder.recordPose(pose)) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.letsfitit;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ImagingKernelsTest {
+
+    @Test
+    public void resizeOfUniformImageKeepsColour() {
+        PixelBuffer src = new PixelBuffer(37, 23);
+        src.fill(0xFF336699);
+        PixelBuffer dst = new PixelBuffer(16, 16);
+        ImagingKernels.resizeBilinear(src, dst);
+        for (int i = 0; i < 16 * 16; i++) {
+            assertEquals(0xFF336699, dst.getData()[i]);
+        }
+    }
+
+    @Test
+    public void lookupNormalizationInBandsMatchesArithmetic() {
+        float[] mean = {0.485f, 0.456f, 0.406f};
+        float[] std = {0.229f, 0.224f, 0.225f};
+        PixelBuffer src = new PixelBuffer(new int[9 * 5], 7, 5, 9);
+        Random random = new Random(7);
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 7; x++) {
+                src.set(x, y, random.nextInt());
+            }
+        }
+        float[] expected = new float[7 * 5 * 3];
+        ImagingKernels.normalize(src, mean, std, expected);
+
+        // Two bands into a direct native-order buffer, as Model fills its input tensor
+        FloatBuffer out = ByteBuffer.allocateDirect(expected.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        float[] lutR = ImagingKernels.normalizationLut(mean[0], std[0]);
+        float[] lutG = ImagingKernels.normalizationLut(mean[1], std[1]);
+        float[] lutB = ImagingKernels.normalizationLut(mean[2], std[2]);
+        ImagingKernels.normalizeRows(src, lutR, lutG, lutB, out, 3, 5);
+        ImagingKernels.normalizeRows(src, lutR, lutG, lutB, out, 0, 3);
+
+        assertEquals(0, out.position());
+        float[] actual = new float[expected.length];
+        out.get(actual);
+        assertArrayEquals(expected, actual, 1e-5f);
+    }
+
+    @Test
+    public void analyzeKeepsBackgroundWhenNothingIsPositive() {
+        // 2 classes over 2 cells: cell 0 all negative, cell 1 won by class 1
+        float[] logits = {-1f, 0.2f, -2f, 0.7f};
+        ImagingKernels.LogitSummary summary = new ImagingKernels.LogitSummary(2, 2, 1);
+        ImagingKernels.analyze(logits, 0.1f, 1L << 1, summary);
+        assertEquals(0, summary.classMap[0]);
+        assertEquals(1, summary.classMap[1]);
+        assertEquals(1, summary.clothingCells);
+    }
+
+    @Test
+    public void analyzeMatchesPerCellReference() {
+        int classes = 5, width = 7, height = 3, plane = width * height;
+        float[] logits = new float[classes * plane];
+        Random random = new Random(42);
+        for (int i = 0; i < logits.length; i++) {
+            logits[i] = random.nextFloat() * 4f - 2f;
+        }
+        logits[3] = 1.5f;
+        logits[plane + 3] = 1.5f; // tie: class 0 keeps the cell
+        long clothingBits = (1L << 2) | (1L << 4);
+
+        ImagingKernels.LogitSummary summary = new ImagingKernels.LogitSummary(classes, width, height);
+        ImagingKernels.analyze(logits, 0.5f, clothingBits, summary);
+        // Run twice so state left over in the reused summary would show up
+        ImagingKernels.analyze(logits, 0.5f, clothingBits, summary);
+
+        int[] counts = new int[classes];
+        int[] above = new int[classes];
+        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+        int clothing = 0;
+        for (int i = 0; i < plane; i++) {
+            // The per-pixel argmax the model code originally used
+            float best = 0f;
+            int bestClass = 0;
+            for (int cls = 0; cls < classes; cls++) {
+                float value = logits[cls * plane + i];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                if (value > 0.5f) above[cls]++;
+                if (value > best) {
+                    best = value;
+                    bestClass = cls;
+                }
+            }
+            assertEquals("cell " + i, bestClass, summary.classMap[i]);
+            counts[bestClass]++;
+            if (((clothingBits >>> bestClass) & 1L) != 0) clothing++;
+        }
+        assertEquals(0, summary.classMap[3]);
+        assertArrayEquals(counts, summary.classCounts);
+        assertArrayEquals(above, summary.aboveThreshold);
+        assertEquals(min, summary.min, 0f);
+        assertEquals(max, summary.max, 0f);
+        assertEquals(clothing, summary.clothingCells);
+        for (int cls = 0; cls < classes; cls++) {
+            assertEquals(counts[cls] > 0, ((summary.presentClasses >>> cls) & 1L) != 0);
+        }
+    }
+
+    @Test
+    public void pixelHashChainsByRowAndSeesSingleChanges() {
+        int[] pixels = new int[6 * 4];
+        Random random = new Random(3);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        long whole = ImagingKernels.hashPixels(17L, pixels, 0, pixels.length);
+        long byRow = 17L;
+        for (int y = 0; y < 4; y++) {
+            byRow = ImagingKernels.hashPixels(byRow, pixels, y * 6, 6);
+        }
+        assertEquals(whole, byRow);
+
+        pixels[13] ^= 1;
+        assertNotEquals(whole, ImagingKernels.hashPixels(17L, pixels, 0, pixels.length));
+        pixels[13] ^= 1;
+
+        // Swapping two pixels must change the key, too
+        int swap = pixels[0];
+        pixels[0] = pixels[1];
+        pixels[1] = swap;
+        assertNotEquals(whole, ImagingKernels.hashPixels(17L, pixels, 0, pixels.length));
+    }
+
+    @Test
+    public void alphaBoundsGrowRowByRow() {
+        int width = 10, threshold = ImagingKernels.GARMENT_ALPHA_THRESHOLD;
+        int[][] rows = new int[6][width];
+        rows[1][4] = (threshold << 24) | 0xFFFFFF; // at the threshold: ignored
+        rows[2][3] = 0xC8102030;
+        rows[3][5] = 0x40000000; // inside the box already
+        rows[4][7] = 0xFF000000;
+        ImagingKernels.AlphaBounds bounds = new ImagingKernels.AlphaBounds();
+        assertTrue(bounds.isEmpty());
+        for (int y = 0; y < rows.length; y++) {
+            ImagingKernels.includeAlphaRow(rows[y], 0, width, y, threshold, bounds);
+        }
+        assertEquals(3, bounds.left);
+        assertEquals(2, bounds.top);
+        assertEquals(8, bounds.right);
+        assertEquals(5, bounds.bottom);
+        assertEquals(5, bounds.width());
+
+        // RGBA bytes as Bitmap.copyPixelsToBuffer writes them, read as little-endian words
+        ByteBuffer rgba = ByteBuffer.allocate(width * 4).order(ByteOrder.LITTLE_ENDIAN);
+        rgba.put(9 * 4 + 3, (byte) 0xFF);
+        int[] words = new int[width];
+        rgba.asIntBuffer().get(words);
+        ImagingKernels.includeAlphaRow(words, 0, width, 0, threshold, bounds);
+        assertEquals(0, bounds.top);
+        assertEquals(10, bounds.right);
+
+        bounds.reset();
+        ImagingKernels.includeAlphaRow(new int[width], 0, width, 0, threshold, bounds);
+        assertTrue(bounds.isEmpty());
+        assertEquals(0, bounds.height());
+    }
+
+    @Test
+    public void lowResolutionAlphaCutsOutTheClass() {
+        // Left half of a 4x4 class map is class 4, the rest background
+        byte[] classMap = new byte[16];
+        for (int y = 0; y < 4; y++) {
+            classMap[y * 4] = 4;
+            classMap[y * 4 + 1] = 4;
+        }
+        byte[] alpha = new byte[16];
+        ImagingKernels.classAlpha(classMap, 16, 1L << 4, alpha);
+        ImagingKernels.blurPlane(alpha, 4, 4, 0.5f);
+
+        PixelBuffer image = new PixelBuffer(64, 64);
+        image.fill(0xFF102030);
+        ImagingKernels.applyAlphaUpsampled(alpha, 4, 4, image);
+
+        assertEquals(0xFF102030 & 0x00FFFFFF, image.get(62, 32) & 0x00FFFFFF);
+        assertTrue((image.get(2, 32) >>> 24) > 200);
+        assertTrue((image.get(62, 32) >>> 24) < 50);
+        int edge = image.get(32, 32) >>> 24;
+        assertTrue(edge > 50 && edge < 200);
+    }
+}
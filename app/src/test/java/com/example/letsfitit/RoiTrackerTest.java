@@ -0,0 +1,88 @@
+package com.example.letsfitit;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RoiTrackerTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Test
+    public void jitteringPoseKeepsOneCropSize() {
+        RoiTracker tracker = new RoiTracker();
+        RoiTracker.Crop crop = new RoiTracker.Crop();
+        PoseFrame pose = new PoseFrame();
+        Random random = new Random(7);
+
+        tracker.onPose(body(pose, 0.5f, 0.5f, 0.5f, 0f, random));
+        tracker.computeCrop(WIDTH, HEIGHT, crop);
+        assertFalse(crop.fullFrame);
+        int width = crop.outWidth;
+        int height = crop.outHeight;
+        int step = crop.step;
+
+        // A few percent of wobble in position and size, as landmarks do between frames
+        for (int i = 0; i < 300; i++) {
+            float size = 0.5f + (random.nextFloat() - 0.5f) * 0.04f;
+            float centerX = 0.5f + (random.nextFloat() - 0.5f) * 0.04f;
+            tracker.onPose(body(pose, centerX, 0.5f, size, 0.005f, random));
+            tracker.computeCrop(WIDTH, HEIGHT, crop);
+            assertEquals(width, crop.outWidth);
+            assertEquals(height, crop.outHeight);
+            assertEquals(step, crop.step);
+        }
+    }
+
+    @Test
+    public void cropGrowsOnceTheBodyLeavesTheMargin() {
+        RoiTracker tracker = new RoiTracker();
+        RoiTracker.Crop crop = new RoiTracker.Crop();
+        PoseFrame pose = new PoseFrame();
+        Random random = new Random(11);
+
+        tracker.onPose(body(pose, 0.5f, 0.5f, 0.4f, 0f, random));
+        tracker.computeCrop(WIDTH, HEIGHT, crop);
+        int width = crop.outWidth;
+        int step = crop.step;
+
+        tracker.onPose(body(pose, 0.5f, 0.5f, 0.6f, 0f, random));
+        tracker.computeCrop(WIDTH, HEIGHT, crop);
+        assertTrue(crop.outWidth > width);
+        assertEquals(step, crop.step);
+        // The grown crop still holds the whole padded body
+        int bodyWidth = (int) (0.6f * 1.6f * WIDTH);
+        assertTrue(crop.outWidth * crop.step >= Math.min(WIDTH, bodyWidth));
+    }
+
+    @Test
+    public void lostTrackingFallsBackToTheFullFrame() {
+        RoiTracker tracker = new RoiTracker();
+        RoiTracker.Crop crop = new RoiTracker.Crop();
+        PoseFrame pose = new PoseFrame();
+
+        tracker.onPose(body(pose, 0.5f, 0.5f, 0.4f, 0f, new Random(3)));
+        tracker.onPoseLost();
+        tracker.onPoseLost();
+        tracker.computeCrop(WIDTH, HEIGHT, crop);
+        assertTrue(crop.fullFrame);
+        assertEquals(WIDTH, crop.outWidth * crop.step);
+        assertEquals(HEIGHT, crop.outHeight * crop.step);
+    }
+
+    // Landmarks spread evenly over a square of the given normalized size, each nudged by up to jitter
+    private static PoseFrame body(PoseFrame pose, float centerX, float centerY, float size, float jitter,
+                                  Random random) {
+        pose.reset(0, 0);
+        for (int i = 0; i < PoseFrame.LANDMARK_COUNT; i++) {
+            float fx = (i % 6) / 5f - 0.5f;
+            float fy = (i / 6) / 5f - 0.5f;
+            float x = centerX + fx * size + (random.nextFloat() - 0.5f) * 2f * jitter;
+            float y = centerY + fy * size + (random.nextFloat() - 0.5f) * 2f * jitter;
+            pose.set(i, x, y, 0f, 1f);
+        }
+        return pose;
+    }
+}
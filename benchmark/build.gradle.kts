@@ -0,0 +1,50 @@
+// JVM microbenchmarks for the app's hot code. Run with ./gradlew :benchmark:jmh
+// Results are written as JSON to benchmark/build/results/jmh/results.json.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Compile the app's Android-free classes straight from its source tree so the benchmarks measure
+// the shipped code. Only list files that do not import android.*
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/letsfitit/YuvToRgbConverter.java",
+                "com/example/letsfitit/PoseFrame.java",
+                "com/example/letsfitit/PoseSmoother.java",
+                "com/example/letsfitit/RoiTracker.java",
+                "com/example/letsfitit/CameraViewTransform.java",
+                "com/example/letsfitit/GarmentPlacement.java",
+                "com/example/letsfitit/FrameRateGovernor.java",
+                "com/example/letsfitit/LatencyHistogram.java",
+                "com/example/letsfitit/PerfMetrics.java",
+                "com/example/letsfitit/FrameRecording.java",
+                "com/example/letsfitit/FrameRecorder.java",
+                "com/example/letsfitit/FrameReplayer.java",
+                "com/example/letsfitit/PixelBuffer.java",
+                "com/example/letsfitit/ImagingKernels.java"
+            )
+        }
+    }
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    // Fixed forks and iteration counts so runs stay comparable; inputs are seeded in BenchmarkInputs
+    fork = 2
+    warmupIterations = 3
+    warmup = "1s"
+    iterations = 5
+    timeOnIteration = "1s"
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    jvmArgs = listOf("-Xms1g", "-Xmx1g")
+}
@@ -0,0 +1,150 @@
+package com.example.letsfitit;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// Synthetic but camera-like inputs, always generated from a fixed seed so every run measures the same data.
+final class BenchmarkInputs {
+    static final long SEED = 0x4C657473L;
+
+    private BenchmarkInputs() {
+    }
+
+    // "640x480" -> {640, 480}
+    static int[] parseSize(String size) {
+        int x = size.indexOf('x');
+        return new int[]{Integer.parseInt(size.substring(0, x)), Integer.parseInt(size.substring(x + 1))};
+    }
+
+    // YUV_420_888 planes as CameraX hands them out. uvPixelStride 2 is the common semi-planar layout,
+    // where the U and V buffers are views into one interleaved chroma plane.
+    static final class YuvFrame {
+        final int width, height;
+        final int yRowStride, uvRowStride, uvPixelStride;
+        final ByteBuffer y, u, v;
+
+        YuvFrame(int width, int height, int uvPixelStride) {
+            this.width = width;
+            this.height = height;
+            this.uvPixelStride = uvPixelStride;
+            // Row padding as many HALs add it
+            this.yRowStride = (width + 63) & ~63;
+            Random random = new Random(SEED);
+
+            byte[] luma = new byte[yRowStride * height];
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    // Soft vertical gradient, a bright blob in the middle (the "person") and sensor noise
+                    int dx = col - width / 2, dy = row - height / 2;
+                    int blob = Math.max(0, 90 - (dx * dx + dy * dy) / (width * 2));
+                    luma[row * yRowStride + col] = (byte) clamp(40 + row * 120 / height + blob + random.nextInt(9) - 4);
+                }
+            }
+            y = ByteBuffer.allocateDirect(luma.length);
+            y.put(luma).flip();
+
+            int chromaWidth = width / 2, chromaHeight = height / 2;
+            if (uvPixelStride == 2) {
+                uvRowStride = yRowStride;
+                ByteBuffer interleaved = ByteBuffer.allocateDirect(uvRowStride * chromaHeight);
+                for (int row = 0; row < chromaHeight; row++) {
+                    for (int col = 0; col < chromaWidth; col++) {
+                        interleaved.put(row * uvRowStride + col * 2, (byte) clamp(128 + (col - chromaWidth / 2) / 8));
+                        interleaved.put(row * uvRowStride + col * 2 + 1, (byte) clamp(128 + (row - chromaHeight / 2) / 8));
+                    }
+                }
+                // Each plane view is one byte shorter than the interleaved data, exactly like the HAL's buffers
+                int interleavedLength = uvRowStride * (chromaHeight - 1) + chromaWidth * 2;
+                interleaved.position(1).limit(interleavedLength);
+                v = interleaved.slice();
+                interleaved.position(0).limit(interleavedLength - 1);
+                u = interleaved.slice();
+            } else {
+                uvRowStride = chromaWidth;
+                u = ByteBuffer.allocateDirect(uvRowStride * chromaHeight);
+                v = ByteBuffer.allocateDirect(uvRowStride * chromaHeight);
+                for (int row = 0; row < chromaHeight; row++) {
+                    for (int col = 0; col < chromaWidth; col++) {
+                        u.put(row * uvRowStride + col, (byte) clamp(128 + (col - chromaWidth / 2) / 8));
+                        v.put(row * uvRowStride + col, (byte) clamp(128 + (row - chromaHeight / 2) / 8));
+                    }
+                }
+            }
+        }
+    }
+
+    // Opaque ARGB photo-like image: gradient background with a darker garment-shaped region and noise
+    static int[] argbImage(int width, int height) {
+        Random random = new Random(SEED);
+        int[] pixels = new int[width * height];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                boolean garment = col > width / 4 && col < width * 3 / 4 && row > height / 5 && row < height * 4 / 5;
+                int base = garment ? 70 : 200 - row * 60 / height;
+                int r = clamp(base + random.nextInt(11) - 5);
+                int g = clamp(base + (garment ? 20 : 0) + random.nextInt(11) - 5);
+                int b = clamp(base + (garment ? 60 : 10) + random.nextInt(11) - 5);
+                pixels[row * width + col] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    // Segmentation logits [classes][size][size]: background everywhere, an upper-clothes region and
+    // pants below it with soft borders, and a little noise on every class like a real network's output
+    static float[][][] segmentationLogits(int classes, int size) {
+        Random random = new Random(SEED);
+        float[][][] output = new float[classes][size][size];
+        for (int cls = 0; cls < classes; cls++) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    output[cls][y][x] = random.nextFloat() * 0.5f;
+                }
+            }
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float cx = (x - size / 2f) / (size / 4f);
+                boolean inside = Math.abs(cx) < 1f;
+                output[0][y][x] += inside ? 0.5f : 3f;
+                if (inside && y > size / 5 && y < size / 2) output[4][y][x] += 3f - Math.abs(cx);
+                if (inside && y >= size / 2 && y < size * 9 / 10) output[6][y][x] += 3f - Math.abs(cx);
+            }
+        }
+        return output;
+    }
+
+    // The same logits laid out flat as the interpreter writes them: class planes of size * size
+    static float[] flatten(float[][][] logits) {
+        int classes = logits.length, size = logits[0].length;
+        float[] flat = new float[classes * size * size];
+        for (int cls = 0; cls < classes; cls++) {
+            for (int y = 0; y < size; y++) {
+                System.arraycopy(logits[cls][y], 0, flat, (cls * size + y) * size, size);
+            }
+        }
+        return flat;
+    }
+
+    // A standing person facing the front camera, in normalized analysis-buffer coordinates (rotation 270)
+    static PoseFrame pose(long timestampMs) {
+        Random random = new Random(SEED);
+        PoseFrame frame = new PoseFrame();
+        frame.reset(timestampMs, 270);
+        for (int i = 0; i < PoseFrame.LANDMARK_COUNT; i++) {
+            // Buffer x runs top-to-bottom of the upright image for rotation 270
+            float along = 0.15f + 0.7f * i / PoseFrame.LANDMARK_COUNT;
+            float across = 0.5f + (i % 2 == 0 ? -0.1f : 0.1f);
+            frame.set(i, along + random.nextFloat() * 0.01f, across + random.nextFloat() * 0.01f, 0f, 0.9f);
+        }
+        frame.set(PoseFrame.LEFT_SHOULDER, 0.35f, 0.38f, 0f, 0.99f);
+        frame.set(PoseFrame.RIGHT_SHOULDER, 0.36f, 0.62f, 0f, 0.99f);
+        frame.set(PoseFrame.LEFT_HIP, 0.62f, 0.42f, 0f, 0.95f);
+        frame.set(PoseFrame.RIGHT_HIP, 0.63f, 0.58f, 0f, 0.95f);
+        return frame;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.letsfitit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Model's original Bitmap-based pre/post-processing, kept as the baseline the ImagingKernels versions are
+// compared against. These are line-for-line copies of the old loops with Bitmap pixel access replaced by
+// ARGB int[] reads and writes, loop order included.
+final class ModelReference {
+    static final int INPUT_SIZE = 512;
+    static final int NUM_CLASSES = 18;
+    static final int OUTPUT_SIZE = 128;
+    static final int[] CLOTHING_CLASSES = {4, 5, 6, 7};
+    static final String[] CLASS_NAMES = {
+            "Background", "Hat", "Hair", "Sunglasses",
+            "Upper-clothes", "Skirt", "Pants", "Dress",
+            "Belt", "Left-shoe", "Right-shoe", "Face",
+            "Left-leg", "Right-leg", "Left-arm", "Right-arm",
+            "Bag", "Scarf"
+    };
+
+    private ModelReference() {
+    }
+
+    // Model.preprocessBitmap: createScaledBitmap(512, 512, filter=true) then per-pixel getPixel + ImageNet normalization
+    static float[][][][] preprocess(int[] argb, int width, int height) {
+        int[] resized = scaleBilinear(argb, width, height, INPUT_SIZE, INPUT_SIZE);
+        float[][][][] input = new float[1][INPUT_SIZE][INPUT_SIZE][3];
+
+        for (int x = 0; x < INPUT_SIZE; x++) {
+            for (int y = 0; y < INPUT_SIZE; y++) {
+                int pixel = resized[y * INPUT_SIZE + x];
+
+                input[0][y][x][0] = (((pixel >> 16) & 0xFF) / 255.0f - 0.485f) / 0.229f;
+                input[0][y][x][1] = (((pixel >> 8) & 0xFF) / 255.0f - 0.456f) / 0.224f;
+                input[0][y][x][2] = ((pixel & 0xFF) / 255.0f - 0.406f) / 0.225f;
+            }
+        }
+        return input;
+    }
+
+    // Stands in for Bitmap.createScaledBitmap with filtering
+    static int[] scaleBilinear(int[] src, int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        int[] dst = new int[dstWidth * dstHeight];
+        float scaleX = (float) srcWidth / dstWidth;
+        float scaleY = (float) srcHeight / dstHeight;
+        for (int y = 0; y < dstHeight; y++) {
+            float sy = Math.max(0f, (y + 0.5f) * scaleY - 0.5f);
+            int y0 = Math.min((int) sy, srcHeight - 1);
+            int y1 = Math.min(y0 + 1, srcHeight - 1);
+            float fy = sy - y0;
+            for (int x = 0; x < dstWidth; x++) {
+                float sx = Math.max(0f, (x + 0.5f) * scaleX - 0.5f);
+                int x0 = Math.min((int) sx, srcWidth - 1);
+                int x1 = Math.min(x0 + 1, srcWidth - 1);
+                float fx = sx - x0;
+                int p00 = src[y0 * srcWidth + x0], p01 = src[y0 * srcWidth + x1];
+                int p10 = src[y1 * srcWidth + x0], p11 = src[y1 * srcWidth + x1];
+                int argb = 0;
+                for (int shift = 0; shift <= 24; shift += 8) {
+                    float top = ((p00 >> shift) & 0xFF) * (1 - fx) + ((p01 >> shift) & 0xFF) * fx;
+                    float bottom = ((p10 >> shift) & 0xFF) * (1 - fx) + ((p11 >> shift) & 0xFF) * fx;
+                    argb |= ((int) (top * (1 - fy) + bottom * fy + 0.5f) & 0xFF) << shift;
+                }
+                dst[y * dstWidth + x] = argb;
+            }
+        }
+        return dst;
+    }
+
+    // The mask loop of Model.createSegmentedBitmap: column-major walk, nearest output cell, argmax per pixel
+    static int[] clothingMask(float[][][] output, int width, int height) {
+        int[] mask = new int[width * height];
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int outputX = Math.min((x * 127) / width, 127);
+                int outputY = Math.min((y * 127) / height, 127);
+
+                float maxProb = 0;
+                int maxClass = 0;
+                for (int cls = 0; cls < NUM_CLASSES; cls++) {
+                    if (output[cls][outputY][outputX] > maxProb) {
+                        maxProb = output[cls][outputY][outputX];
+                        maxClass = cls;
+                    }
+                }
+
+                boolean isClothing = false;
+                for (int clothClass : CLOTHING_CLASSES) {
+                    if (maxClass == clothClass) {
+                        isClothing = true;
+                        break;
+                    }
+                }
+
+                mask[y * width + x] = isClothing ? 0xFFFFFFFF : 0;
+            }
+        }
+        return mask;
+    }
+
+    // Model.getDetectedItems without the logging
+    static List<String> detectedItems(float[][][] output) {
+        List<String> detectedItems = new ArrayList<>();
+        int[] pixelCounts = new int[NUM_CLASSES];
+        int totalPixels = OUTPUT_SIZE * OUTPUT_SIZE;
+
+        for (int x = 0; x < OUTPUT_SIZE; x++) {
+            for (int y = 0; y < OUTPUT_SIZE; y++) {
+                float maxProb = 0;
+                int maxClass = 0;
+                for (int cls = 0; cls < NUM_CLASSES; cls++) {
+                    if (output[cls][y][x] > maxProb) {
+                        maxProb = output[cls][y][x];
+                        maxClass = cls;
+                    }
+                }
+                pixelCounts[maxClass]++;
+            }
+        }
+
+        for (int cls : CLOTHING_CLASSES) {
+            double percentage = (pixelCounts[cls] * 100.0) / totalPixels;
+            if (percentage > 0.5) {
+                detectedItems.add(CLASS_NAMES[cls]);
+            }
+        }
+        return detectedItems;
+    }
+
+    // Model.debugOutput: a full min/max pass plus one pass per clothing class
+    static int debugStatistics(float[][][] output) {
+        float min = Float.MAX_VALUE;
+        float max = Float.MIN_VALUE;
+        for (int cls = 0; cls < NUM_CLASSES; cls++) {
+            for (int y = 0; y < OUTPUT_SIZE; y++) {
+                for (int x = 0; x < OUTPUT_SIZE; x++) {
+                    float val = output[cls][y][x];
+                    if (val < min) min = val;
+                    if (val > max) max = val;
+                }
+            }
+        }
+
+        int nonZero = 0;
+        for (int cls : CLOTHING_CLASSES) {
+            for (int y = 0; y < OUTPUT_SIZE; y++) {
+                for (int x = 0; x < OUTPUT_SIZE; x++) {
+                    if (output[cls][y][x] > 0.1f) {
+                        nonZero++;
+                    }
+                }
+            }
+        }
+        return nonZero + (int) (max - min);
+    }
+}
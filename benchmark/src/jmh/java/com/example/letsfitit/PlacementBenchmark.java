@@ -0,0 +1,85 @@
+package com.example.letsfitit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// The per-vsync work of ARActivity.onVsync: pose prediction, landmark-to-view mapping and garment placement.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlacementBenchmark {
+    private static final long SHOULDERS = PoseFrame.maskOf(PoseFrame.LEFT_SHOULDER, PoseFrame.RIGHT_SHOULDER);
+    private static final long HIPS = PoseFrame.maskOf(PoseFrame.LEFT_HIP, PoseFrame.RIGHT_HIP);
+    private static final long FRAME_NANOS = 33_333_333L;
+    private static final long VSYNC_NANOS = 16_666_667L;
+
+    // Preview view sizes of common phones
+    @Param({"720x1280", "1080x2340", "1440x3200"})
+    public String viewSize;
+
+    private int viewWidth;
+    private int viewHeight;
+    private final CameraViewTransform transform = new CameraViewTransform();
+    private final GarmentPlacement placement = new GarmentPlacement();
+    private final PoseSmoother smoother = new PoseSmoother();
+    private final PoseFrame display = new PoseFrame();
+    private final float[] points = new float[PoseFrame.LANDMARK_COUNT * 2];
+    private PoseFrame pose;
+    private long vsyncNanos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] size = BenchmarkInputs.parseSize(viewSize);
+        viewWidth = size[0];
+        viewHeight = size[1];
+        // Two results one camera frame apart with the body drifting sideways, so prediction has a velocity
+        smoother.update(BenchmarkInputs.pose(1_000L), 1_000_000_000L);
+        pose = BenchmarkInputs.pose(1_033L);
+        pose.set(PoseFrame.LEFT_SHOULDER, 0.35f, 0.39f, 0f, 0.99f);
+        pose.set(PoseFrame.RIGHT_SHOULDER, 0.36f, 0.63f, 0f, 0.99f);
+        smoother.update(pose, 1_000_000_000L + FRAME_NANOS);
+        vsyncNanos = 1_000_000_000L + FRAME_NANOS;
+    }
+
+    // Steady state: inputs unchanged, so update() is just the change check
+    @Benchmark
+    public float[] mapLandmarks() {
+        transform.update(640, 480, 270, true, viewWidth, viewHeight, CameraViewTransform.ScaleMode.FILL_CENTER);
+        transform.mapLandmarks(pose, points);
+        return points;
+    }
+
+    @Benchmark
+    public GarmentPlacement mapAndPlace() {
+        transform.update(640, 480, 270, true, viewWidth, viewHeight, CameraViewTransform.ScaleMode.FILL_CENTER);
+        transform.mapLandmarks(pose, points);
+        placement.compute("shirt", points, pose.hasAll(HIPS), viewHeight, 400f, 500f);
+        return placement;
+    }
+
+    // One full vsync: extrapolate the smoothed pose, map it and place the garment
+    @Benchmark
+    public GarmentPlacement vsyncFrame() {
+        vsyncNanos += VSYNC_NANOS;
+        if (vsyncNanos > 1_000_000_000L + 4 * FRAME_NANOS) {
+            vsyncNanos = 1_000_000_000L + FRAME_NANOS;
+        }
+        smoother.predict(vsyncNanos, display);
+        transform.update(640, 480, display.getRotation(), true, viewWidth, viewHeight,
+                CameraViewTransform.ScaleMode.FILL_CENTER);
+        transform.mapLandmarks(display, points);
+        if (display.hasAll(SHOULDERS)) {
+            placement.compute("shirt", points, display.hasAll(HIPS), viewHeight, 400f, 500f);
+        }
+        return placement;
+    }
+}
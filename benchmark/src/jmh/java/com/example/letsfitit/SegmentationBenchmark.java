@@ -0,0 +1,128 @@
+package com.example.letsfitit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Model's CPU work around the TFLite call: input preparation for a picked photo, and the
+// argmax / mask / statistics passes over the 18x128x128 output. The unprefixed benchmarks run the
+// old loops from ModelReference, the kernel* ones the ImagingKernels path Model uses now.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SegmentationBenchmark {
+    // Photo sizes as they arrive from the gallery or camera after decoding
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
+    private static final long CLOTHING_CLASS_BITS = (1L << 4) | (1L << 5) | (1L << 6) | (1L << 7);
+
+    @Param({"640x480", "1280x960", "2048x1536"})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private int[] photo;
+    private float[][][] logits;
+    private float[] flatLogits;
+    private PixelBuffer photoBuffer;
+    private PixelBuffer resized;
+    private byte[] maskAlpha;
+    private float[] input;
+    private FloatBuffer directInput;
+    private float[] lutR, lutG, lutB;
+    private ImagingKernels.LogitSummary summary;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] size = BenchmarkInputs.parseSize(resolution);
+        width = size[0];
+        height = size[1];
+        photo = BenchmarkInputs.argbImage(width, height);
+        logits = BenchmarkInputs.segmentationLogits(ModelReference.NUM_CLASSES, ModelReference.OUTPUT_SIZE);
+        flatLogits = BenchmarkInputs.flatten(logits);
+        photoBuffer = new PixelBuffer(photo.clone(), width, height, width);
+        resized = new PixelBuffer(ModelReference.INPUT_SIZE, ModelReference.INPUT_SIZE);
+        maskAlpha = new byte[ModelReference.OUTPUT_SIZE * ModelReference.OUTPUT_SIZE];
+        input = new float[ModelReference.INPUT_SIZE * ModelReference.INPUT_SIZE * 3];
+        directInput = ByteBuffer.allocateDirect(input.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        lutR = ImagingKernels.normalizationLut(MEAN[0], STD[0]);
+        lutG = ImagingKernels.normalizationLut(MEAN[1], STD[1]);
+        lutB = ImagingKernels.normalizationLut(MEAN[2], STD[2]);
+        summary = new ImagingKernels.LogitSummary(ModelReference.NUM_CLASSES,
+                ModelReference.OUTPUT_SIZE, ModelReference.OUTPUT_SIZE);
+    }
+
+    @Benchmark
+    public float[][][][] preprocess() {
+        return ModelReference.preprocess(photo, width, height);
+    }
+
+    @Benchmark
+    public int[] clothingMask() {
+        return ModelReference.clothingMask(logits, width, height);
+    }
+
+    @Benchmark
+    public List<String> detectedItems() {
+        return ModelReference.detectedItems(logits);
+    }
+
+    @Benchmark
+    public int debugStatistics() {
+        return ModelReference.debugStatistics(logits);
+    }
+
+    @Benchmark
+    public float[] kernelPreprocess() {
+        ImagingKernels.resizeBilinear(photoBuffer, resized);
+        ImagingKernels.normalize(resized, MEAN, STD, input);
+        return input;
+    }
+
+    // What Model runs per band: lookup-table normalization into the direct input tensor, single-threaded here
+    @Benchmark
+    public FloatBuffer kernelPreprocessDirect() {
+        ImagingKernels.resizeBilinear(photoBuffer, resized);
+        ImagingKernels.normalizeRows(resized, lutR, lutG, lutB, directInput, 0, ModelReference.INPUT_SIZE);
+        return directInput;
+    }
+
+    // The fused pass replacing detectedItems + debugStatistics (and the argmax inside clothingMask)
+    @Benchmark
+    public ImagingKernels.LogitSummary kernelAnalyze() {
+        ImagingKernels.analyze(flatLogits, 0.1f, CLOTHING_CLASS_BITS, summary);
+        return summary;
+    }
+
+    // analyze + 128x128 alpha + blur + upsampled DST_IN, i.e. everything after inference.
+    // Compositing keeps fading photoBuffer's alpha across calls, which does not change the work done.
+    @Benchmark
+    public PixelBuffer kernelSegment() {
+        ImagingKernels.analyze(flatLogits, 0.1f, CLOTHING_CLASS_BITS, summary);
+        ImagingKernels.classAlpha(summary.classMap, maskAlpha.length, CLOTHING_CLASS_BITS, maskAlpha);
+        ImagingKernels.blurPlane(maskAlpha, ModelReference.OUTPUT_SIZE, ModelReference.OUTPUT_SIZE, 1f);
+        ImagingKernels.applyAlphaUpsampled(maskAlpha, ModelReference.OUTPUT_SIZE, ModelReference.OUTPUT_SIZE, photoBuffer);
+        return photoBuffer;
+    }
+
+    @Benchmark
+    public PixelBuffer kernelSegmentSoft() {
+        ImagingKernels.probabilityAlpha(flatLogits, ModelReference.NUM_CLASSES, ModelReference.OUTPUT_SIZE,
+                ModelReference.OUTPUT_SIZE, CLOTHING_CLASS_BITS, maskAlpha);
+        ImagingKernels.blurPlane(maskAlpha, ModelReference.OUTPUT_SIZE, ModelReference.OUTPUT_SIZE, 1f);
+        ImagingKernels.applyAlphaUpsampled(maskAlpha, ModelReference.OUTPUT_SIZE, ModelReference.OUTPUT_SIZE, photoBuffer);
+        return photoBuffer;
+    }
+}
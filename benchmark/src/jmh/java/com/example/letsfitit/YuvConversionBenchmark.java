@@ -0,0 +1,66 @@
+package com.example.letsfitit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+// YUV_420_888 -> ARGB as done by ImageUtils.imageToBitmap / imageRegionToBitmap, minus the final
+// Bitmap.setPixels copy which only exists on device.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class YuvConversionBenchmark {
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    // 2 = semi-planar (NV21/NV12-like, most devices), 1 = fully planar (I420)
+    @Param({"2", "1"})
+    public int uvPixelStride;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private BenchmarkInputs.YuvFrame frame;
+    private YuvToRgbConverter converter;
+    private final RoiTracker.Crop fullFrameCrop = new RoiTracker.Crop();
+    private int[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] size = BenchmarkInputs.parseSize(resolution);
+        frame = new BenchmarkInputs.YuvFrame(size[0], size[1], uvPixelStride);
+        converter = new YuvToRgbConverter(threads);
+        out = new int[size[0] * size[1]];
+        // What the ROI tracker picks before it has locked onto a body: the whole frame, downsampled
+        new RoiTracker().computeCrop(size[0], size[1], fullFrameCrop);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        converter.close();
+    }
+
+    @Benchmark
+    public int[] fullFrame() {
+        converter.convert(frame.y, frame.yRowStride, frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                frame.width, frame.height, out);
+        return out;
+    }
+
+    @Benchmark
+    public int[] detectorCrop() {
+        RoiTracker.Crop crop = fullFrameCrop;
+        converter.convertRegion(frame.y, frame.yRowStride, frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                crop.left, crop.top, crop.outWidth, crop.outHeight, crop.step, out);
+        return out;
+    }
+}
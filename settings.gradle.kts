@@ -22,4 +22,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Let's Fit It"
 include(":app")
+include(":benchmark")
  
\ No newline at end of file